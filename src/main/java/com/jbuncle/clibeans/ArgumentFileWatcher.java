@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+
+/**
+ * Watches an argument file (see {@link Utils#readArgumentFile(java.nio.file.Path)}) and applies its options to a
+ * {@link LiveBinding} whenever it changes. Intended to be run on its own thread, until closed. A reload that fails,
+ * for example because of an invalid option value, leaves the bound instance unchanged and is reported to the
+ * listener, and watching continues.
+ *
+ * @author James Buncle
+ * @param <T>
+ */
+public class ArgumentFileWatcher<T> implements Runnable, Closeable {
+
+    private final LiveBinding<T> binding;
+    private final Path file;
+    private final Listener<T> listener;
+    private final WatchService watchService;
+
+    public ArgumentFileWatcher(final LiveBinding<T> binding, final Path file, final Listener<T> listener)
+            throws IOException {
+        this.binding = binding;
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Re-read the argument file and apply any changed options to the binding, notifying the listener if anything
+     * changed.
+     *
+     * @return the names of the options which changed
+     * @throws IOException
+     */
+    public Set<String> reload() throws IOException {
+        final Set<String> changed = binding.parseDelta(Utils.readArgumentFile(file));
+        if (!changed.isEmpty()) {
+            listener.optionsChanged(binding.getTarget(), changed);
+        }
+        return changed;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                boolean modified = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context())) {
+                        modified = true;
+                    }
+                }
+                if (modified) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException ex) {
+                        //Keep the current options, the next change may fix the file
+                        listener.reloadFailed(file, ex);
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            //Closed, stop watching
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Notified when a reload of the argument file changes one or more options, or fails.
+     *
+     * @param <T>
+     */
+    public interface Listener<T> {
+
+        public void optionsChanged(T target, Set<String> changedOptions);
+
+        /**
+         * Called when the argument file can't be read or applied, in which case the bound instance is unchanged.
+         *
+         * @param file the argument file
+         * @param error why the reload failed
+         */
+        public void reloadFailed(Path file, Exception error);
+
+    }
+
+}
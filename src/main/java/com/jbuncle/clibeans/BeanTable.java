@@ -0,0 +1,467 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed option values for many argument arrays, held in columns keyed by option ordinal rather than as an object
+ * instance per argument array. Primitive options are held in primitive arrays, strings are dictionary encoded, and
+ * each option has a bitmap recording which rows it was given in. Object instances are only created on demand, with
+ * {@link #materialize(int)}.
+ * <br />
+ * Options not given in a row hold their default value, or null/zero/false if they don't have one. Values which may
+ * be mutable, that is any other than primitives and strings, are converted again from their argument for each
+ * materialized instance, so instances never share them.
+ *
+ * @author James Buncle
+ * @param <T>
+ */
+public class BeanTable<T> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final CommandLineParser<T> parser;
+    private final String[] optionNames;
+    private final Map<String, Integer> ordinals;
+    private final Column[] columns;
+    private final long[][] present;
+    private final Object[] defaults;
+    private int size;
+    private int capacity;
+
+    BeanTable(final CommandLineParser<T> parser) {
+        this.parser = parser;
+        this.optionNames = parser.getOptionNames();
+        this.ordinals = new HashMap<>();
+        this.columns = new Column[optionNames.length];
+        this.present = new long[optionNames.length][];
+        this.defaults = new Object[optionNames.length];
+        this.capacity = INITIAL_CAPACITY;
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            final String optionName = optionNames[ordinal];
+            ordinals.put(optionName, ordinal);
+            final Class<?> type = parser.isFlag(optionName) ? Boolean.TYPE : parser.getOptionType(optionName);
+            columns[ordinal] = newColumn(type, capacity);
+            present[ordinal] = new long[(capacity + 63) >>> 6];
+            if (parser.hasDefaultValue(optionName)) {
+                defaults[ordinal] = parser.convertValue(optionName, parser.getDefaultValue(optionName));
+            }
+        }
+    }
+
+    private static Column newColumn(final Class<?> type, final int capacity) {
+        if (type == Integer.TYPE || type == Short.TYPE || type == Byte.TYPE) {
+            return new IntColumn(capacity, type);
+        } else if (type == Long.TYPE) {
+            return new LongColumn(capacity);
+        } else if (type == Double.TYPE || type == Float.TYPE) {
+            return new DoubleColumn(capacity, type == Float.TYPE);
+        } else if (type == Boolean.TYPE) {
+            return new BooleanColumn(capacity);
+        } else if (type == String.class) {
+            return new StringColumn(capacity);
+        }
+        return new ObjectColumn(capacity);
+    }
+
+    /**
+     * Parse an argument array into a new row. Every option is converted before the row is written, so if any can't
+     * be converted the table is left unchanged.
+     *
+     * @param args
+     * @return the index of the new row
+     */
+    public int add(final String[] args) {
+        final Map<String, String> argsMap = parser.getOptionsMap(args);
+        final Object[] values = new Object[optionNames.length];
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            final String optionName = optionNames[ordinal];
+            if (argsMap.containsKey(optionName)) {
+                values[ordinal] = parser.convertValue(optionName, argsMap.get(optionName));
+            }
+        }
+        if (size == capacity) {
+            grow();
+        }
+        final int row = size;
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            if (argsMap.containsKey(optionNames[ordinal])) {
+                columns[ordinal].set(row, values[ordinal]);
+                if (columns[ordinal] instanceof ObjectColumn) {
+                    ((ObjectColumn) columns[ordinal]).arguments[row] = argsMap.get(optionNames[ordinal]);
+                }
+                present[ordinal][row >>> 6] |= 1L << row;
+            } else if (defaults[ordinal] != null) {
+                columns[ordinal].set(row, defaults[ordinal]);
+            }
+        }
+        size++;
+        return row;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            columns[ordinal].grow(capacity);
+            present[ordinal] = Arrays.copyOf(present[ordinal], (capacity + 63) >>> 6);
+        }
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the ordinal of an option, used to access its column.
+     *
+     * @param optionName the option name
+     * @return the option ordinal
+     */
+    public int getOrdinal(final String optionName) {
+        final Integer ordinal = ordinals.get(optionName);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Unknown option " + optionName);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Check whether an option was given in a row.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return whether the option was given
+     */
+    public boolean isPresent(final int row, final int ordinal) {
+        checkRow(row);
+        return (present[ordinal][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Get the value of an int, short or byte option.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public int getInt(final int row, final int ordinal) {
+        checkRow(row);
+        return ((IntColumn) columns[ordinal]).values[row];
+    }
+
+    /**
+     * Get the value of a long option.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public long getLong(final int row, final int ordinal) {
+        checkRow(row);
+        return ((LongColumn) columns[ordinal]).values[row];
+    }
+
+    /**
+     * Get the value of a double or float option.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public double getDouble(final int row, final int ordinal) {
+        checkRow(row);
+        return ((DoubleColumn) columns[ordinal]).values[row];
+    }
+
+    /**
+     * Get the value of a boolean option or flag.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public boolean getBoolean(final int row, final int ordinal) {
+        checkRow(row);
+        return ((BooleanColumn) columns[ordinal]).get(row);
+    }
+
+    /**
+     * Get the value of a string option.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public String getString(final int row, final int ordinal) {
+        checkRow(row);
+        return ((StringColumn) columns[ordinal]).get(row);
+    }
+
+    /**
+     * Get the value of any option, boxing primitive values. Values other than primitives and strings are held by the
+     * table, so must not be modified; use {@link #materialize(int)} for values of your own.
+     *
+     * @param row the row index
+     * @param ordinal the option ordinal
+     * @return the option value
+     */
+    public Object getObject(final int row, final int ordinal) {
+        checkRow(row);
+        return columns[ordinal].get(row);
+    }
+
+    /**
+     * Create an object instance from a row, as {@link CommandLineParser#parseArguments(java.lang.String[])} would
+     * have created from the row's arguments.
+     *
+     * @param row the row index
+     * @return a new object instance of the target class
+     */
+    public T materialize(final int row) {
+        checkRow(row);
+        final Map<String, Object> values = new HashMap<>();
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            final String optionName = optionNames[ordinal];
+            final boolean isPresent = isPresent(row, ordinal);
+            if (!isPresent && defaults[ordinal] == null) {
+                continue;
+            }
+            if (columns[ordinal] instanceof ObjectColumn) {
+                //Primitive and string values are immutable, any other value could be changed through an instance
+                final String argument = isPresent
+                        ? ((ObjectColumn) columns[ordinal]).arguments[row] : parser.getDefaultValue(optionName);
+                values.put(optionName, parser.convertValue(optionName, argument));
+            } else {
+                values.put(optionName, columns[ordinal].get(row));
+            }
+        }
+        try {
+            return parser.newInstanceFromValues(values);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(values.toString(), ex);
+        }
+    }
+
+    private void checkRow(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private abstract static class Column {
+
+        abstract void set(int row, Object value);
+
+        abstract Object get(int row);
+
+        abstract void grow(int capacity);
+    }
+
+    private static class IntColumn extends Column {
+
+        private final Class<?> type;
+        private int[] values;
+
+        IntColumn(final int capacity, final Class<?> type) {
+            this.type = type;
+            this.values = new int[capacity];
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            values[row] = ((Number) value).intValue();
+        }
+
+        @Override
+        Object get(final int row) {
+            if (type == Short.TYPE) {
+                return (short) values[row];
+            } else if (type == Byte.TYPE) {
+                return (byte) values[row];
+            }
+            return values[row];
+        }
+
+        @Override
+        void grow(final int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static class LongColumn extends Column {
+
+        private long[] values;
+
+        LongColumn(final int capacity) {
+            this.values = new long[capacity];
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            values[row] = (Long) value;
+        }
+
+        @Override
+        Object get(final int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(final int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+
+        private final boolean isFloat;
+        private double[] values;
+
+        DoubleColumn(final int capacity, final boolean isFloat) {
+            this.isFloat = isFloat;
+            this.values = new double[capacity];
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        Object get(final int row) {
+            if (isFloat) {
+                return (float) values[row];
+            }
+            return values[row];
+        }
+
+        @Override
+        void grow(final int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+
+        private long[] values;
+
+        BooleanColumn(final int capacity) {
+            this.values = new long[(capacity + 63) >>> 6];
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            if ((Boolean) value) {
+                values[row >>> 6] |= 1L << row;
+            } else {
+                values[row >>> 6] &= ~(1L << row);
+            }
+        }
+
+        @Override
+        Boolean get(final int row) {
+            return (values[row >>> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        void grow(final int capacity) {
+            values = Arrays.copyOf(values, (capacity + 63) >>> 6);
+        }
+    }
+
+    private static class StringColumn extends Column {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] values;
+
+        StringColumn(final int capacity) {
+            this.values = new int[capacity];
+            Arrays.fill(values, -1);
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            if (value == null) {
+                values[row] = -1;
+                return;
+            }
+            Integer code = codes.get((String) value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add((String) value);
+                codes.put((String) value, code);
+            }
+            values[row] = code;
+        }
+
+        @Override
+        String get(final int row) {
+            final int code = values[row];
+            return code < 0 ? null : dictionary.get(code);
+        }
+
+        @Override
+        void grow(final int capacity) {
+            final int previous = values.length;
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(values, previous, capacity, -1);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+
+        private Object[] values;
+        private String[] arguments;
+
+        ObjectColumn(final int capacity) {
+            this.values = new Object[capacity];
+            this.arguments = new String[capacity];
+        }
+
+        @Override
+        void set(final int row, final Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        Object get(final int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(final int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
+        }
+    }
+
+}
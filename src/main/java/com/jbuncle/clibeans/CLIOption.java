@@ -28,10 +28,11 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Marks a setter method, or a parameter of a {@link CLIFactory} constructor or method, as a CLI option.
  *
  * @author James Buncle
  */
-@Target(value = ElementType.METHOD)
+@Target(value = {ElementType.METHOD, ElementType.PARAMETER})
 @Retention(value = RetentionPolicy.RUNTIME)
 public @interface CLIOption {
 
@@ -73,6 +74,14 @@ public @interface CLIOption {
      */
     public String regex() default ".*";
 
+    /**
+     * The maximum length of the CLI option argument, checked before the argument is matched against the regular
+     * expression.
+     *
+     * @return the maximum argument length, or -1 for no limit
+     */
+    public int maxLength() default -1;
+
     /**
      * An alternative name for the CLI Option, which will be prefixed with a dash (-) symbol. This could be a short or
      * long name for the option.
@@ -87,4 +96,35 @@ public @interface CLIOption {
      * @return the default string value
      */
     public String defaultValue() default "";
+
+    /**
+     * Name of an environment variable to read the CLI option argument from, when the option isn't given on the
+     * command line.
+     *
+     * @return the environment variable name, or an empty string if the option has no environment binding
+     */
+    public String env() default "";
+
+    /**
+     * Other CLI options, by name or alias, which must also be given when this option is given. Checked by
+     * validation.
+     *
+     * @return the names of the required options
+     */
+    public String[] requires() default {};
+
+    /**
+     * Other CLI options, by name or alias, which must not be given when this option is given. Checked by
+     * validation.
+     *
+     * @return the names of the excluded options
+     */
+    public String[] excludes() default {};
+
+    /**
+     * The name of a group of CLI options of which exactly one must be given. Checked by validation.
+     *
+     * @return the group name, or an empty string if the option isn't part of a group
+     */
+    public String oneOf() default "";
 }
@@ -24,19 +24,50 @@ package com.jbuncle.clibeans;
 
 import static com.jbuncle.clibeans.Utils.parseCliOptions;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Maps command line arguments to a given object annotated methods. CLI arguments should be prefixed with a dash (-)
  * symbol
+ * <br />
+ * Options not given on the command line are taken, in order of precedence, from the option's environment variable
+ * (see {@link CLIOption#env()}), then from the properties file (if one has been set), and finally from the option's
+ * default value.
+ * <br />
+ * Options can be set through annotated setter methods, or passed to a constructor or static factory method annotated
+ * with {@link CLIFactory}, whose parameters are annotated with {@link CLIOption}. Without a {@link CLIFactory}, a
+ * class with no annotated setters is created through the public constructor whose parameters are all annotated (for
+ * example the canonical constructor of a record), allowing immutable objects to be created.
+ * <br />
+ * Setters (or factory parameters) taking a {@link Lazy} or java.util.function.Supplier are passed a thunk which
+ * converts the option the first time it's used, so expensive conversions are only paid for when needed.
+ * <br />
+ * Operands (arguments which aren't options) are passed to the setter annotated with {@link CLIOperands}, if any.
  *
  * @author James Buncle
  * @param <T>
@@ -46,28 +77,276 @@ public class CommandLineParser<T extends Object> {
     private final Class<T> targetClass;
     private final Map<String, Method> annotatedMethods;
     private final Map<String, CLIOption> annotations;
+    private final Map<String, Class<?>> optionTypes;
+    private final Map<String, Class<?>> lazyTypes;
+    private final Map<String, Method> getters;
+    private volatile T prototype;
+    private final Constructor<?> factoryConstructor;
+    private final Method factoryMethod;
+    private final String[] factoryOptions;
     private final Map<Class, PropertyEditor> propertyEditors;
     private final Map<String, String> aliases;
+    private final Set<String> flags;
+    private final Method operandsMethod;
+    private final Method operandsGetter;
+    private final Class<?> operandType;
+    private final Map<String, Pattern> patterns;
+    private final OptionConstraints constraints;
+    private long regexTimeoutNanos;
+    private ValuePool valuePool;
+    private Map<String, String> environment;
+    private File propertiesFile;
 
     public CommandLineParser(final Class<T> targetClass) {
         this.targetClass = targetClass;
         this.annotatedMethods = new LinkedHashMap<>();
         this.annotations = new LinkedHashMap<>();
+        this.optionTypes = new HashMap<>();
+        this.lazyTypes = new HashMap<>();
+        this.getters = new HashMap<>();
         this.propertyEditors = new LinkedHashMap<>();
         this.aliases = new LinkedHashMap<>();
+        this.flags = new HashSet<>();
+        this.patterns = new HashMap<>();
 
         for (final Method method : this.targetClass.getMethods()) {
-            if (method.isAnnotationPresent(CLIOption.class)) {
+            //Only setters, record accessors can carry the annotation from their component
+            if (method.isAnnotationPresent(CLIOption.class) && method.getParameterTypes().length == 1) {
                 final CLIOption annotation = getAnnotation(method);
                 this.annotatedMethods.put(annotation.name(), method);
-                this.annotations.put(annotation.name(), annotation);
-                if (annotation.alias().length > 0) {
-                    for (String alias : annotation.alias()) {
-                        this.aliases.put(alias, annotation.name());
-                    }
+                addOption(annotation, method.getParameterTypes()[0], method.getGenericParameterTypes()[0]);
+                final String property = method.getName().startsWith("set")
+                        ? method.getName().substring(3) : capitalise(method.getName());
+                addGetter(annotation.name(), "get" + property, "is" + property);
+            }
+        }
+
+        this.factoryMethod = findFactoryMethod(targetClass);
+        if (this.factoryMethod != null) {
+            this.factoryConstructor = null;
+        } else {
+            this.factoryConstructor = findFactoryConstructor(targetClass, annotatedMethods.isEmpty());
+        }
+        if (this.factoryMethod != null) {
+            this.factoryOptions = addFactoryOptions(factoryMethod.getParameterAnnotations(),
+                    factoryMethod.getParameterTypes(), factoryMethod.getGenericParameterTypes(), factoryMethod);
+        } else if (this.factoryConstructor != null) {
+            this.factoryOptions = addFactoryOptions(factoryConstructor.getParameterAnnotations(),
+                    factoryConstructor.getParameterTypes(), factoryConstructor.getGenericParameterTypes(),
+                    factoryConstructor);
+        } else {
+            this.factoryOptions = null;
+        }
+        this.constraints = new OptionConstraints(annotations, aliases);
+        this.operandsMethod = findOperandsMethod(targetClass);
+        if (this.operandsMethod != null) {
+            this.operandType = getTypeArgument(operandsMethod.getGenericParameterTypes()[0]);
+            final String property = operandsMethod.getName().startsWith("set")
+                    ? operandsMethod.getName().substring(3) : capitalise(operandsMethod.getName());
+            this.operandsGetter = findGetter("get" + property, "is" + property);
+        } else {
+            this.operandType = null;
+            this.operandsGetter = null;
+        }
+        this.environment = indexEnvironment(System.getenv());
+    }
+
+    private void addOption(final CLIOption annotation, final Class<?> parameterType, final Type genericType) {
+        this.annotations.put(annotation.name(), annotation);
+        this.optionTypes.put(annotation.name(), parameterType);
+        if (parameterType == Lazy.class || Lazy.isSupplier(parameterType)) {
+            this.lazyTypes.put(annotation.name(), getTypeArgument(genericType));
+        }
+        if (!annotation.regex().equals(".*")) {
+            this.patterns.put(annotation.name(), Pattern.compile(annotation.regex()));
+        }
+        if (annotation.alias().length > 0) {
+            for (String alias : annotation.alias()) {
+                this.aliases.put(alias, annotation.name());
+            }
+        }
+        if (annotation.flag()) {
+            this.flags.add(annotation.name());
+            this.flags.addAll(Arrays.asList(annotation.alias()));
+        }
+    }
+
+    private String[] addFactoryOptions(final Annotation[][] parameterAnnotations, final Class<?>[] parameterTypes,
+            final Type[] genericTypes, final Object factory) {
+        final String[] optionNames = new String[parameterTypes.length];
+        for (int index = 0; index < parameterTypes.length; index++) {
+            final CLIOption annotation = findAnnotation(parameterAnnotations[index]);
+            if (annotation == null) {
+                throw new IllegalArgumentException("Parameter " + index + " of " + factory + " is not a CLIOption");
+            }
+            optionNames[index] = annotation.name();
+            addOption(annotation, parameterTypes[index], genericTypes[index]);
+            final String property = capitalise(annotation.name());
+            addGetter(annotation.name(), "get" + property, "is" + property, annotation.name());
+        }
+        return optionNames;
+    }
+
+    /**
+     * Pair an option with the first of the given getter methods found, for writing the option back out.
+     */
+    private void addGetter(final String optionName, final String... getterNames) {
+        final Method getter = findGetter(getterNames);
+        if (getter != null) {
+            this.getters.put(optionName, getter);
+        }
+    }
+
+    private Method findGetter(final String... getterNames) {
+        for (final String getterName : getterNames) {
+            try {
+                final Method getter = targetClass.getMethod(getterName);
+                if (getter.getReturnType() != Void.TYPE) {
+                    return getter;
+                }
+            } catch (NoSuchMethodException ex) {
+                //Try the next name
+            }
+        }
+        return null;
+    }
+
+    private static String capitalise(final String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Method findOperandsMethod(final Class<?> targetClass) {
+        for (final Method method : targetClass.getMethods()) {
+            if (method.isAnnotationPresent(CLIOperands.class)) {
+                final Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length != 1
+                        || (parameterTypes[0] != Iterator.class && parameterTypes[0] != Iterable.class)) {
+                    throw new IllegalArgumentException("Operands method must take an Iterator or Iterable: " + method);
+                }
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the class of the type argument of a generic type, such as Path for Iterator&lt;Path&gt;, defaulting to
+     * String.
+     */
+    private static Class<?> getTypeArgument(final Type type) {
+        if (type instanceof ParameterizedType) {
+            final Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return (Class<?>) argument;
+            }
+        }
+        return String.class;
+    }
+
+    private static Method findFactoryMethod(final Class<?> targetClass) {
+        for (final Method method : targetClass.getMethods()) {
+            if (method.isAnnotationPresent(CLIFactory.class)) {
+                if (!Modifier.isStatic(method.getModifiers()) || !targetClass.isAssignableFrom(method.getReturnType())) {
+                    throw new IllegalArgumentException("Factory method must be static and return " + targetClass
+                            + ": " + method);
                 }
+                return method;
             }
         }
+        return null;
+    }
+
+    private static Constructor<?> findFactoryConstructor(final Class<?> targetClass, final boolean implicit) {
+        for (final Constructor<?> constructor : targetClass.getConstructors()) {
+            if (constructor.isAnnotationPresent(CLIFactory.class)) {
+                return constructor;
+            }
+        }
+        if (implicit) {
+            //Use a constructor taking only options, such as a record's canonical constructor
+            for (final Constructor<?> constructor : targetClass.getConstructors()) {
+                if (constructor.getParameterTypes().length > 0 && isAllOptions(constructor.getParameterAnnotations())) {
+                    return constructor;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAllOptions(final Annotation[][] parameterAnnotations) {
+        for (final Annotation[] annotations : parameterAnnotations) {
+            if (findAnnotation(annotations) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CLIOption findAnnotation(final Annotation[] annotations) {
+        for (final Annotation annotation : annotations) {
+            if (annotation instanceof CLIOption) {
+                return (CLIOption) annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the environment snapshot taken when the parser was created.
+     *
+     * @param environment environment variables keyed by name
+     */
+    public void setEnvironment(final Map<String, String> environment) {
+        this.environment = indexEnvironment(environment);
+    }
+
+    /**
+     * Set a properties file to read options from, keyed by option name or alias. The file is only re-read when it
+     * changes.
+     *
+     * @param propertiesFile the properties file, or null for none
+     */
+    public void setPropertiesFile(final File propertiesFile) {
+        this.propertiesFile = propertiesFile;
+    }
+
+    /**
+     * Share equal immutable option values between the object instances created by this parser, to reduce the memory
+     * held by large numbers of instances. Property editor results are only shared if their class has been registered
+     * with the pool as immutable.
+     *
+     * @param valuePool the pool to share values through, or null to stop sharing values
+     */
+    public void setValuePool(final ValuePool valuePool) {
+        this.valuePool = valuePool;
+    }
+
+    /**
+     * Limit the time spent matching an option argument against its regular expression. Arguments which can't be
+     * matched in time are treated as invalid, bounding validation time for untrusted input regardless of the pattern.
+     *
+     * @param timeout the maximum time per match, or zero for no limit
+     * @param unit the unit of the timeout
+     */
+    public void setRegexTimeout(final long timeout, final TimeUnit unit) {
+        this.regexTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Index the environment variables bound to options by option name, so lookups don't need to go back to the full
+     * environment.
+     *
+     * @param environment environment variables keyed by name
+     * @return environment values keyed by option name
+     */
+    private Map<String, String> indexEnvironment(final Map<String, String> environment) {
+        final Map<String, String> indexed = new HashMap<>();
+        for (final CLIOption annotation : annotations.values()) {
+            if (!annotation.env().isEmpty() && environment.containsKey(annotation.env())) {
+                indexed.put(annotation.name(), environment.get(annotation.env()));
+            }
+        }
+        return Collections.unmodifiableMap(indexed);
     }
 
     public Help getHelp() {
@@ -79,8 +358,54 @@ public class CommandLineParser<T extends Object> {
     }
 
     public Set<String> validate(final String[] args) {
-        final Set<String> invalidOptions = new LinkedHashSet<>();
-        final Map<String, String> cliOptions = getOptionsMap(args);
+        return validateOptions(getOptionsMap(args));
+    }
+
+    /**
+     * Validate options given as a map, such as request parameters, in the same way as
+     * {@link #validate(java.lang.String[])}.
+     *
+     * @param parameters option values keyed by option name or alias
+     * @return the names of the invalid options
+     */
+    public Set<String> validate(final Map<String, ?> parameters) {
+        return validateOptions(getOptionsMap(parameters));
+    }
+
+    /**
+     * Check the given arguments against the cross-option constraints, see {@link CLIOption#requires()},
+     * {@link CLIOption#excludes()} and {@link CLIOption#oneOf()}.
+     *
+     * @param args
+     * @return the violated constraints
+     */
+    public List<ConstraintViolation> checkConstraints(final String[] args) {
+        return constraints.check(getOptionsMap(args));
+    }
+
+    /**
+     * Check options given as a map against the cross-option constraints, as with
+     * {@link #checkConstraints(java.lang.String[])}.
+     *
+     * @param parameters option values keyed by option name or alias
+     * @return the violated constraints
+     */
+    public List<ConstraintViolation> checkConstraints(final Map<String, ?> parameters) {
+        return constraints.check(getOptionsMap(parameters));
+    }
+
+    private Set<String> validateOptions(final Map<String, String> cliOptions) {
+        return new LinkedHashSet<>(getValidationErrors(cliOptions).keySet());
+    }
+
+    /**
+     * Validate options, describing why each invalid option is invalid.
+     *
+     * @param cliOptions option values keyed by option name
+     * @return error messages keyed by option name
+     */
+    private Map<String, String> getValidationErrors(final Map<String, String> cliOptions) {
+        final Map<String, String> errors = new LinkedHashMap<>();
 
         for (Entry<String, CLIOption> entry : annotations.entrySet()) {
             //Loop annotations and do checks, maps annotation -> args
@@ -90,15 +415,24 @@ public class CommandLineParser<T extends Object> {
             final boolean hasCliOption = cliOptions.containsKey(cliOption);
 
             if (annotation.required() && !hasCliOption) {
-                invalidOptions.add(cliOption);
+                errors.put(cliOption, "Required option missing");
             } else if (hasCliOption && cliOptionValue != null) {
                 if (!validateValue(annotation, cliOptionValue)) {
-                    invalidOptions.add(cliOption);
+                    errors.put(cliOption, "Invalid value");
                 }
             }
 
         }
-        return invalidOptions;
+        for (final ConstraintViolation violation : constraints.check(cliOptions)) {
+            if (violation.getType() == ConstraintViolation.Type.ONE_OF) {
+                for (final String relatedOption : violation.getRelatedOptions()) {
+                    errors.put(relatedOption, violation.toString());
+                }
+            } else {
+                errors.put(violation.getOption(), violation.toString());
+            }
+        }
+        return errors;
     }
 
     private boolean validateValue(final CLIOption annotation, final String cliOptionValue) {
@@ -106,16 +440,31 @@ public class CommandLineParser<T extends Object> {
         if (annotation.required() && (cliOptionValue == null || cliOptionValue.isEmpty())) {
             return false;
         } else if (cliOptionValue != null && !cliOptionValue.isEmpty()) {
-            final String regex = annotation.regex();
-            return cliOptionValue.matches(regex);
+            if (annotation.maxLength() >= 0 && cliOptionValue.length() > annotation.maxLength()) {
+                return false;
+            }
+            final Pattern pattern = patterns.get(annotation.name());
+            return pattern == null || matches(pattern, cliOptionValue);
         }
         return true;
     }
 
+    private boolean matches(final Pattern pattern, final String cliOptionValue) {
+        if (regexTimeoutNanos <= 0) {
+            return pattern.matcher(cliOptionValue).matches();
+        }
+        final DeadlineCharSequence input = new DeadlineCharSequence(cliOptionValue, System.nanoTime() + regexTimeoutNanos);
+        try {
+            return pattern.matcher(input).matches();
+        } catch (DeadlineCharSequence.DeadlineExceededException ex) {
+            return false;
+        }
+    }
+
     public T interactive() {
         try {
-            //Create new instance to load options into
-            final T targetInstance = targetClass.newInstance();
+            //Collect options to load into a new instance
+            final Map<String, String> optionsMap = new LinkedHashMap<>();
             //Load system in
             //Loop annotations and request from text entry
             for (final CLIOption cliOption : annotations.values()) {
@@ -124,17 +473,13 @@ public class CommandLineParser<T extends Object> {
                 while (!isValid) {
                     String value = getValueFromConsole(cliOption);
                     isValid = validateValue(cliOption, value);
-                    if (isValid) {
-                        if (!value.isEmpty()) {
-                            invokeAnnotatedMethod(cliOption.name(), targetInstance, value);
-                        } else {
-                            invokeAnnotationDefault(cliOption.name(), targetInstance);
-                        }
+                    if (isValid && !value.isEmpty()) {
+                        optionsMap.put(cliOption.name(), value);
                     }
                 }
 
             }
-            return targetInstance;
+            return newInstance(optionsMap, null);
         } catch (ReflectiveOperationException | IllegalArgumentException | IOException ex) {
             throw new IllegalArgumentException(ex);
         }
@@ -188,24 +533,426 @@ public class CommandLineParser<T extends Object> {
      */
     public T parseArguments(String[] args) {
         try {
-            //Load annotated methods into a Map keyed by the option name
-            final T targetInstance = targetClass.newInstance();
+            final List<String> operands = new ArrayList<>();
+            return newInstance(getOptionsMap(args, operands), operands);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(Arrays.toString(args), ex);
+        }
+    }
+
+    /**
+     * Validate and map the given argument array to a new instance of the target class, reporting invalid options
+     * and values that can't be converted through the result rather than by throwing exceptions. Rejecting invalid
+     * input costs about the same as accepting valid input, as long as any property editors used implement
+     * {@link FailablePropertyEditor}. Operands are converted as they're read, as with
+     * {@link #parseArguments(java.lang.String[])}.
+     *
+     * @param args
+     * @return the result, holding either the new object instance or error messages keyed by option name
+     */
+    public ParseResult<T> tryParseArguments(final String[] args) {
+        final List<String> operands = new ArrayList<>();
+        return tryNewInstance(getOptionsMap(args, operands), operands);
+    }
+
+    /**
+     * Validate and map the given option values to a new instance of the target class, as with
+     * {@link #tryParseArguments(java.lang.String[])}.
+     *
+     * @param parameters option values keyed by option name or alias
+     * @return the result, holding either the new object instance or error messages keyed by option name
+     */
+    public ParseResult<T> tryBind(final Map<String, ?> parameters) {
+        return tryNewInstance(getOptionsMap(parameters), null);
+    }
 
+    private ParseResult<T> tryNewInstance(final Map<String, String> argsMap, final List<String> operands) {
+        final Map<String, String> errors = getValidationErrors(argsMap);
+        final Map<String, Object> values = new HashMap<>();
+        final Conversion conversion = new Conversion();
+        for (final String optionName : annotations.keySet()) {
+            final String value;
+            if (argsMap.containsKey(optionName)) {
+                value = argsMap.get(optionName);
+            } else if (!hasDefault(optionName)) {
+                value = getDefault(optionName);
+            } else {
+                continue;
+            }
+            if (tryConvertValue(optionName, value, conversion)) {
+                values.put(optionName, conversion.getValue());
+            } else if (!errors.containsKey(optionName)) {
+                errors.put(optionName, conversion.getError());
+            }
+        }
+        if (!errors.isEmpty()) {
+            return ParseResult.failure(errors);
+        }
+        try {
+            final T targetInstance = newInstanceFromValues(values);
+            if (operandsMethod != null) {
+                invokeOperandsMethod(targetInstance, operands != null ? operands : Collections.<String>emptyList());
+            }
+            return ParseResult.success(targetInstance);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(argsMap.toString(), ex);
+        }
+    }
+
+    /**
+     * Map the given option values to a new instance of the target class, without going through an argument array.
+     * Values may be strings, string arrays (of which the first element is used, as with request parameters) or null
+     * for flags; other values are converted to strings.
+     *
+     * @param parameters option values keyed by option name or alias
+     * @return a new object instance of the target class, with property set based on the parameters provided
+     */
+    public T bind(final Map<String, ?> parameters) {
+        try {
+            return newInstance(getOptionsMap(parameters), null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(parameters.toString(), ex);
+        }
+    }
+
+    /**
+     * Create an empty table to bulk parse arguments into, see {@link BeanTable}. Not supported for classes taking
+     * operands, which a table can't hold.
+     *
+     * @return a new empty table
+     */
+    public BeanTable<T> newTable() {
+        if (operandsMethod != null) {
+            throw new UnsupportedOperationException(targetClass + " takes operands, which a table can't hold");
+        }
+        return new BeanTable<>(this);
+    }
+
+    /**
+     * Parse each of the given argument arrays into a row of a new table, see {@link BeanTable}.
+     *
+     * @param argsList
+     * @return a new table, with a row per argument array
+     */
+    public BeanTable<T> parseTable(final Iterable<String[]> argsList) {
+        final BeanTable<T> table = newTable();
+        for (final String[] args : argsList) {
+            table.add(args);
+        }
+        return table;
+    }
+
+    /**
+     * Map the given argument array to a new instance of the target class, which can later be updated in place with
+     * {@link LiveBinding#parseDelta(java.lang.String[])}. Not supported for classes created through a factory, or
+     * taking operands, as only options can be updated.
+     *
+     * @param args
+     * @return a binding holding the new object instance of the target class
+     */
+    public LiveBinding<T> parseLive(String[] args) {
+        if (factoryOptions != null) {
+            throw new UnsupportedOperationException(targetClass + " is created through a factory, so can't be updated");
+        }
+        if (operandsMethod != null) {
+            throw new UnsupportedOperationException(targetClass + " takes operands, which can't be updated");
+        }
+        try {
             final Map<String, String> argsMap = getOptionsMap(args);
+            return new LiveBinding<>(this, newInstance(argsMap, null), argsMap);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(Arrays.toString(args), ex);
+        }
+    }
 
-            for (Entry<String, Method> annotatedMethodEntry : annotatedMethods.entrySet()) {
-                final String optionName = annotatedMethodEntry.getKey();
-                if (argsMap.containsKey(optionName)) {
-                    final String value = argsMap.get(optionName);
-                    invokeAnnotatedMethod(optionName, targetInstance, value);
-                } else if (!hasDefault(optionName)) {
-                    invokeAnnotationDefault(optionName, targetInstance);
+    /**
+     * Create a new instance of the target class from parsed options.
+     *
+     * @param argsMap option values keyed by option name
+     * @param operands operands to pass to the operands method, or null for none
+     * @return a new object instance of the target class
+     * @throws ReflectiveOperationException
+     */
+    private T newInstance(final Map<String, String> argsMap, final List<String> operands)
+            throws ReflectiveOperationException {
+        final Map<String, Object> values = new HashMap<>();
+        for (final String optionName : annotations.keySet()) {
+            if (argsMap.containsKey(optionName)) {
+                values.put(optionName, convertValue(optionName, argsMap.get(optionName)));
+            } else if (!hasDefault(optionName)) {
+                values.put(optionName, convertValue(optionName, getDefault(optionName)));
+            }
+        }
+        final T targetInstance = newInstanceFromValues(values);
+        if (operandsMethod != null) {
+            invokeOperandsMethod(targetInstance, operands != null ? operands : Collections.<String>emptyList());
+        }
+        return targetInstance;
+    }
+
+    /**
+     * Create a new instance of the target class from converted option values. Setters of options without a value
+     * aren't invoked, and factory parameters without a value are passed their empty value.
+     *
+     * @param values converted option values keyed by option name
+     * @return a new object instance of the target class
+     * @throws ReflectiveOperationException
+     */
+    T newInstanceFromValues(final Map<String, Object> values) throws ReflectiveOperationException {
+        final T targetInstance;
+        if (factoryOptions != null) {
+            //Everything is converted up front, so create the instance in a single call
+            final Object[] parameters = new Object[factoryOptions.length];
+            for (int index = 0; index < factoryOptions.length; index++) {
+                final String optionName = factoryOptions[index];
+                if (values.containsKey(optionName)) {
+                    parameters[index] = values.get(optionName);
+                } else {
+                    parameters[index] = getEmptyValue(optionName);
+                }
+            }
+            if (factoryMethod != null) {
+                targetInstance = targetClass.cast(factoryMethod.invoke(null, parameters));
+            } else {
+                targetInstance = targetClass.cast(factoryConstructor.newInstance(parameters));
+            }
+        } else {
+            targetInstance = targetClass.newInstance();
+        }
+        for (Entry<String, Method> annotatedMethodEntry : annotatedMethods.entrySet()) {
+            final String optionName = annotatedMethodEntry.getKey();
+            if (values.containsKey(optionName)) {
+                annotatedMethodEntry.getValue().invoke(targetInstance, values.get(optionName));
+            }
+        }
+        return targetInstance;
+    }
+
+    /**
+     * Apply only the options that differ between two sets of parsed options to an existing instance. Options which
+     * have been removed are restored to their default value. All changed values are converted before any setter is
+     * invoked, so a value that can't be converted leaves the instance unchanged. Lazy options are converted here too,
+     * rather than on first use, so a bad value is reported to the caller instead of to whoever reads it.
+     *
+     * @param targetInstance the instance to update
+     * @param previous the option values last applied to the instance, keyed by option name
+     * @param current the new option values, keyed by option name
+     * @return the names of the options that changed
+     * @throws ReflectiveOperationException
+     */
+    Set<String> applyDelta(final T targetInstance, final Map<String, String> previous, final Map<String, String> current)
+            throws ReflectiveOperationException {
+        final Map<String, Object> changed = new LinkedHashMap<>();
+        for (final String optionName : annotatedMethods.keySet()) {
+            final boolean wasPresent = previous.containsKey(optionName);
+            final boolean isPresent = current.containsKey(optionName);
+            if (isPresent) {
+                final String value = current.get(optionName);
+                if (!wasPresent || !Objects.equals(previous.get(optionName), value)) {
+                    changed.put(optionName, convertValue(optionName, value));
                 }
+            } else if (wasPresent) {
+                changed.put(optionName, getRestoredValue(optionName));
+            }
+        }
+        for (final Object value : changed.values()) {
+            final Lazy<?> lazy = Lazy.unwrap(value);
+            if (lazy != null) {
+                lazy.get();
+            }
+        }
+        for (final Entry<String, Object> entry : changed.entrySet()) {
+            annotatedMethods.get(entry.getKey()).invoke(targetInstance, entry.getValue());
+        }
+        return changed.keySet();
+    }
+
+    /**
+     * Get the value to restore an option to when it's no longer given, that is its default value, or for options
+     * without a default value null, or zero/false for primitive types.
+     *
+     * @param optionName
+     * @return the converted value
+     */
+    private Object getRestoredValue(final String optionName) {
+        if (!getAnnotation(optionName).defaultValue().isEmpty()) {
+            return convertValue(optionName, getDefault(optionName));
+        }
+        return getEmptyValue(optionName);
+    }
+
+    /**
+     * Get the value for an option without a default value that isn't given, that is false for flags, otherwise null,
+     * or zero/false for primitive types.
+     */
+    private Object getEmptyValue(final String optionName) {
+        if (getAnnotation(optionName).flag()) {
+            return false;
+        }
+        return Utils.getEmptyValue(optionTypes.get(optionName));
+    }
+
+    /**
+     * Write the given object instance back out as arguments, the reverse of {@link #parseArguments(java.lang.String[])}.
+     * Only options whose values differ from what parsing no arguments gives, that is their default or the value from
+     * the environment or properties file, are written, each as a single <i>-option=argument</i> (or <i>-flag</i>)
+     * argument, so parsing the result gives back an equal object. Options are written using their
+     * property editor if it is a {@link ReversiblePropertyEditor}, otherwise as their string value. Operands are
+     * written after a double dash (--) argument.
+     *
+     * @param targetInstance
+     * @return the arguments
+     * @throws IllegalStateException if a value can't be written as an argument, such as null for an option whose
+     * default isn't null, or false for a flag which defaults to true
+     */
+    public String[] toArgs(final T targetInstance) {
+        final T defaults = getPrototype();
+        final List<String> operands = getOperandArgs(targetInstance);
+        final String[] args = new String[annotations.size() + (operands.isEmpty() ? 0 : operands.size() + 1)];
+        int count = 0;
+        for (final String optionName : annotations.keySet()) {
+            final String arg = toArg(optionName, targetInstance, defaults);
+            if (arg != null) {
+                args[count++] = arg;
             }
+        }
+        if (!operands.isEmpty()) {
+            args[count++] = "--";
+            for (final String operand : operands) {
+                args[count++] = operand;
+            }
+        }
+        return count == args.length ? args : Arrays.copyOf(args, count);
+    }
 
-            return targetInstance;
+    /**
+     * Write the given object instance back out as a command line, as with {@link #toArgs(java.lang.Object)}.
+     * Arguments are separated by spaces, and quoted for a POSIX shell where needed.
+     *
+     * @param targetInstance
+     * @param out where to write the command line
+     * @throws IOException
+     */
+    public void toArgs(final T targetInstance, final Appendable out) throws IOException {
+        final T defaults = getPrototype();
+        boolean first = true;
+        for (final String optionName : annotations.keySet()) {
+            final String arg = toArg(optionName, targetInstance, defaults);
+            if (arg != null) {
+                if (!first) {
+                    out.append(' ');
+                }
+                Utils.appendQuoted(arg, out);
+                first = false;
+            }
+        }
+        final List<String> operands = getOperandArgs(targetInstance);
+        if (!operands.isEmpty()) {
+            out.append(first ? "--" : " --");
+            for (final String operand : operands) {
+                out.append(' ');
+                Utils.appendQuoted(operand, out);
+            }
+        }
+    }
+
+    /**
+     * Get the operands of an instance as arguments. Operands passed by the parser are written back out as they were
+     * given; any other Iterable is written using the string value of each operand.
+     */
+    private List<String> getOperandArgs(final T targetInstance) {
+        if (operandsMethod == null) {
+            return Collections.emptyList();
+        }
+        if (operandsGetter == null) {
+            throw new IllegalStateException("No getter for operands in " + targetClass);
+        }
+        final Object value;
+        try {
+            value = operandsGetter.invoke(targetInstance);
         } catch (ReflectiveOperationException ex) {
-            throw new IllegalArgumentException(Arrays.toString(args), ex);
+            throw new IllegalArgumentException(operandsGetter.toString(), ex);
+        }
+        if (value == null) {
+            return Collections.emptyList();
+        } else if (value instanceof Operands) {
+            return ((Operands) value).values;
+        } else if (value instanceof OperandIterator) {
+            return ((OperandIterator) value).operands.values;
+        } else if (value instanceof Iterable) {
+            final List<String> operands = new ArrayList<>();
+            for (final Object operand : (Iterable<?>) value) {
+                operands.add(Utils.typeToString(operand));
+            }
+            return operands;
+        }
+        throw new IllegalStateException("Operands of " + targetClass + " can't be read back from " + value);
+    }
+
+    private String toArg(final String optionName, final T targetInstance, final T defaults) {
+        final Method getter = getters.get(optionName);
+        if (getter == null) {
+            throw new IllegalStateException("No getter for option " + optionName + " in " + targetClass);
+        }
+        try {
+            final Object value = unwrapLazy(getter.invoke(targetInstance));
+            if (Objects.equals(value, unwrapLazy(getter.invoke(defaults)))) {
+                return null;
+            }
+            if (value == null) {
+                throw new IllegalStateException("Option " + optionName + " is null, which can't be written as an"
+                        + " argument as it isn't null when not given");
+            }
+            if (getAnnotation(optionName).flag()) {
+                if (!Boolean.TRUE.equals(value)) {
+                    throw new IllegalStateException("Flag " + optionName + " is false, which can't be written as an"
+                            + " argument as it's true when not given");
+                }
+                return "-" + optionName;
+            }
+            return "-" + optionName + "=" + valueToString(optionName, value);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(optionName, ex);
+        }
+    }
+
+    /**
+     * Get the value behind a lazily converted option value, converting it if needed.
+     */
+    private static Object unwrapLazy(final Object value) {
+        final Lazy<?> lazy = Lazy.unwrap(value);
+        return lazy != null ? lazy.get() : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String valueToString(final String optionName, final Object value) {
+        final Class<?> valueType = lazyTypes.containsKey(optionName)
+                ? lazyTypes.get(optionName) : optionTypes.get(optionName);
+        final PropertyEditor<?> propertyEditor = this.propertyEditors.get(valueType);
+        if (propertyEditor instanceof ReversiblePropertyEditor) {
+            return ((ReversiblePropertyEditor<Object>) propertyEditor).getString(value);
+        }
+        return Utils.typeToString(value);
+    }
+
+    /**
+     * Get an instance created from no arguments, holding the value each option has when not given. Only cached when
+     * no option is taken from the environment or properties file, as those can change.
+     */
+    private T getPrototype() {
+        final Map<String, String> fallbacks = getOptionsMap(new String[0]);
+        try {
+            if (!fallbacks.isEmpty()) {
+                return newInstance(fallbacks, null);
+            }
+            T defaults = prototype;
+            if (defaults == null) {
+                defaults = newInstance(Collections.<String, String>emptyMap(), null);
+                prototype = defaults;
+            }
+            return defaults;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(fallbacks.toString(), ex);
         }
     }
 
@@ -213,6 +960,31 @@ public class CommandLineParser<T extends Object> {
         invokeAnnotatedMethod(optionName, targetInstance, getDefault(optionName));
     }
 
+    /**
+     * Get the names of the options, in ordinal order.
+     *
+     * @return the option names
+     */
+    String[] getOptionNames() {
+        return annotations.keySet().toArray(new String[annotations.size()]);
+    }
+
+    Class<?> getOptionType(final String optionName) {
+        return optionTypes.get(optionName);
+    }
+
+    boolean isFlag(final String optionName) {
+        return getAnnotation(optionName).flag();
+    }
+
+    boolean hasDefaultValue(final String optionName) {
+        return !hasDefault(optionName);
+    }
+
+    String getDefaultValue(final String optionName) {
+        return getDefault(optionName);
+    }
+
     private boolean hasDefault(final String optionName) {
         return getAnnotation(optionName).defaultValue().isEmpty();
     }
@@ -222,30 +994,152 @@ public class CommandLineParser<T extends Object> {
     }
 
     private CLIOption getAnnotation(final String optionName) {
-        return getAnnotation(annotatedMethods.get(optionName));
+        return annotations.get(optionName);
     }
 
     private void invokeAnnotatedMethod(String optionName, final T targetInstance, final String value) throws ReflectiveOperationException {
         //found an annotation for the option
         final Method method = annotatedMethods.get(optionName);
-        if (getAnnotation(method).flag()) {
-            //Flag, so treat as 'true'
-            method.invoke(targetInstance, true);
+        //Invoke the method on the Object instance using the converted value
+        method.invoke(targetInstance, convertValue(optionName, value));
+    }
+
+    /**
+     * Pass the operands to the operands method, as an Iterator or Iterable which converts each operand as it's read.
+     */
+    private void invokeOperandsMethod(final T targetInstance, final List<String> operands)
+            throws ReflectiveOperationException {
+        final Operands iterable = new Operands(this, operands);
+        if (operandsMethod.getParameterTypes()[0] == Iterator.class) {
+            operandsMethod.invoke(targetInstance, iterable.iterator());
         } else {
-            /*
-             * Convert the given option value (a string) to the
-             * required basic type (as determined by the methods
-             * argument type)
-             */
-            final Class<?> parameterType = method.getParameterTypes()[0];
-            final Object valueObject;
-            if (this.propertyEditors.containsKey(parameterType)) {
-                valueObject = this.propertyEditors.get(parameterType).getObject(value);
+            operandsMethod.invoke(targetInstance, iterable);
+        }
+    }
+
+    /**
+     * Operands which are converted as they're read, keeping the operands as given so they can be written back out.
+     */
+    private static class Operands implements Iterable<Object> {
+
+        private final CommandLineParser<?> parser;
+        private final List<String> values;
+
+        private Operands(final CommandLineParser<?> parser, final List<String> values) {
+            this.parser = parser;
+            this.values = values;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new OperandIterator(this);
+        }
+    }
+
+    private static class OperandIterator implements Iterator<Object> {
+
+        private final Operands operands;
+        private final Iterator<String> iterator;
+
+        private OperandIterator(final Operands operands) {
+            this.operands = operands;
+            this.iterator = operands.values.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Object next() {
+            return operands.parser.convertType(operands.parser.operandType, iterator.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    Object convertValue(final String optionName, final String value) {
+        if (getAnnotation(optionName).flag()) {
+            //Flag, so treat as 'true'
+            return true;
+        }
+        /*
+         * Convert the given option value (a string) to the
+         * required basic type (as determined by the methods
+         * argument type)
+         */
+        if (lazyTypes.containsKey(optionName)) {
+            return toLazy(optionName, value);
+        }
+        return convertType(optionTypes.get(optionName), value);
+    }
+
+    /**
+     * Create a thunk which converts the value on first use, as either a Lazy or a Supplier depending on the option
+     * type.
+     */
+    private Object toLazy(final String optionName, final String value) {
+        final Class<?> valueType = lazyTypes.get(optionName);
+        final Lazy<Object> lazy = new Lazy<>(new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                return convertType(valueType, value);
+            }
+        });
+        final Class<?> parameterType = optionTypes.get(optionName);
+        return parameterType == Lazy.class ? lazy : lazy.toSupplier(parameterType);
+    }
+
+    /**
+     * Convert an option value without throwing exceptions for invalid values, except from property editors which
+     * don't implement {@link FailablePropertyEditor}.
+     *
+     * @return whether the value was converted
+     */
+    @SuppressWarnings("unchecked")
+    private boolean tryConvertValue(final String optionName, final String value, final Conversion conversion) {
+        if (getAnnotation(optionName).flag()) {
+            return conversion.succeed(true);
+        }
+        if (lazyTypes.containsKey(optionName)) {
+            //Only converted when used
+            return conversion.succeed(toLazy(optionName, value));
+        }
+        final Class<?> parameterType = optionTypes.get(optionName);
+        final boolean converted;
+        if (this.propertyEditors.containsKey(parameterType)) {
+            final PropertyEditor<?> propertyEditor = this.propertyEditors.get(parameterType);
+            if (propertyEditor instanceof FailablePropertyEditor) {
+                converted = ((FailablePropertyEditor<?>) propertyEditor).tryGetObject(value, conversion);
             } else {
-                valueObject = Utils.stringToType(parameterType, value);
+                try {
+                    converted = conversion.succeed(propertyEditor.getObject(value));
+                } catch (RuntimeException ex) {
+                    return conversion.fail(String.valueOf(ex.getMessage()));
+                }
             }
-            //Invoke the method on the Object instance using the converted value
-            method.invoke(targetInstance, valueObject);
+        } else {
+            converted = Utils.tryStringToType(parameterType, value, conversion);
+        }
+        if (converted && valuePool != null && !parameterType.isPrimitive()) {
+            conversion.succeed(valuePool.intern(conversion.getValue()));
+        }
+        return converted;
+    }
+
+    private Object convertType(final Class<?> parameterType, final String value) {
+        //Primitive values are unboxed when set, so nothing is saved by sharing them
+        final ValuePool pool = parameterType.isPrimitive() ? null : valuePool;
+        if (this.propertyEditors.containsKey(parameterType)) {
+            final Object valueObject = this.propertyEditors.get(parameterType).getObject(value);
+            return pool != null ? pool.intern(valueObject) : valueObject;
+        } else {
+            return Utils.stringToType(parameterType, value, pool);
         }
     }
 
@@ -259,8 +1153,19 @@ public class CommandLineParser<T extends Object> {
      * @param args
      * @return
      */
-    private Map<String, String> getOptionsMap(final String[] args) {
-        final Map<String, String> optionsMap = parseCliOptions(args);
+    Map<String, String> getOptionsMap(final String[] args) {
+        return getOptionsMap(args, null);
+    }
+
+    /**
+     * Parse CLI arguments into key-value pairs, collecting operands.
+     *
+     * @param args
+     * @param operands list to add operands to, or null to ignore operands
+     * @return
+     */
+    private Map<String, String> getOptionsMap(final String[] args, final List<String> operands) {
+        final Map<String, String> optionsMap = parseCliOptions(args, flags, operands);
         // Cleanup aliased
         for (final Entry<String, String> alias : aliases.entrySet()) {
             if (optionsMap.containsKey(alias.getKey())) {
@@ -268,11 +1173,99 @@ public class CommandLineParser<T extends Object> {
                 optionsMap.put(alias.getValue(), value);
             }
         }
+        addFallbackOptions(optionsMap, Collections.<String>emptySet());
+        return optionsMap;
+    }
+
+    /**
+     * Resolve option values keyed by option name or alias into key-value pairs keyed by option name. Flags are
+     * given when their value is null, empty or true. Any option in the map, including a disabled flag, takes
+     * precedence over the environment and properties file.
+     *
+     * @param parameters
+     * @return
+     */
+    Map<String, String> getOptionsMap(final Map<String, ?> parameters) {
+        final Map<String, String> optionsMap = new HashMap<>();
+        final Set<String> given = new HashSet<>();
+        for (final Entry<String, ?> parameter : parameters.entrySet()) {
+            String optionName = parameter.getKey();
+            if (aliases.containsKey(optionName)) {
+                optionName = aliases.get(optionName);
+            }
+            final CLIOption annotation = annotations.get(optionName);
+            if (annotation != null) {
+                putOption(optionsMap, annotation, toOptionValue(parameter.getValue()));
+                given.add(optionName);
+            }
+        }
+        addFallbackOptions(optionsMap, given);
         return optionsMap;
     }
 
+    private static String toOptionValue(final Object value) {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof String[]) {
+            final String[] values = (String[]) value;
+            return values.length > 0 ? values[0] : null;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Add options missing from the command line, taken from the environment and then the properties file.
+     *
+     * @param optionsMap command line options keyed by option name
+     * @param given names of options given explicitly, including disabled flags which aren't in the map
+     */
+    private void addFallbackOptions(final Map<String, String> optionsMap, final Set<String> given) {
+        final Properties properties;
+        if (propertiesFile != null) {
+            properties = PropertiesFileCache.load(propertiesFile);
+        } else {
+            properties = null;
+        }
+        for (final CLIOption annotation : annotations.values()) {
+            final String optionName = annotation.name();
+            if (optionsMap.containsKey(optionName) || given.contains(optionName)) {
+                continue;
+            }
+            String value = environment.get(optionName);
+            if (value == null && properties != null) {
+                value = getProperty(properties, annotation);
+            }
+            if (value != null) {
+                putOption(optionsMap, annotation, value);
+            }
+        }
+    }
+
+    /**
+     * Add an option taken from somewhere other than the command line. Flags are only added when enabled, that is
+     * when their value is null, empty or true.
+     */
+    private static void putOption(final Map<String, String> optionsMap, final CLIOption annotation,
+            final String value) {
+        if (!annotation.flag()) {
+            optionsMap.put(annotation.name(), value);
+        } else if (value == null || value.isEmpty() || Boolean.parseBoolean(value)) {
+            optionsMap.put(annotation.name(), null);
+        }
+    }
+
+    private static String getProperty(final Properties properties, final CLIOption annotation) {
+        String value = properties.getProperty(annotation.name());
+        for (int index = 0; value == null && index < annotation.alias().length; index++) {
+            value = properties.getProperty(annotation.alias()[index]);
+        }
+        return value;
+    }
+
     public final <T> void registerPropertyEditor(final Class<T> clazz, final PropertyEditor<T> propertyEditor) {
         this.propertyEditors.put(clazz, propertyEditor);
+        this.prototype = null;
     }
 
 }
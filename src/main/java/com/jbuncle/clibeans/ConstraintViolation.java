@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A broken cross-option constraint, see {@link CLIOption#requires()}, {@link CLIOption#excludes()} and
+ * {@link CLIOption#oneOf()}.
+ *
+ * @author James Buncle
+ */
+public class ConstraintViolation {
+
+    public enum Type {
+
+        /**
+         * The option was given without options it requires.
+         */
+        REQUIRES,
+        /**
+         * The option was given with options it excludes.
+         */
+        EXCLUDES,
+        /**
+         * None, or more than one, of the options in a group were given.
+         */
+        ONE_OF
+    }
+
+    private final Type type;
+    private final String option;
+    private final Set<String> relatedOptions;
+
+    protected ConstraintViolation(final Type type, final String option, final Set<String> relatedOptions) {
+        this.type = type;
+        this.option = option;
+        this.relatedOptions = Collections.unmodifiableSet(relatedOptions);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the option which declared the constraint, or the group name for {@link Type#ONE_OF} violations.
+     *
+     * @return the option or group name
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * Get the options missing for {@link Type#REQUIRES}, the options given for {@link Type#EXCLUDES}, or the group
+     * options given (or all of them, if none were given) for {@link Type#ONE_OF} violations.
+     *
+     * @return the related option names
+     */
+    public Set<String> getRelatedOptions() {
+        return relatedOptions;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + option + " " + relatedOptions;
+    }
+
+}
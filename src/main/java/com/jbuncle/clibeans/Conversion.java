@@ -0,0 +1,68 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+/**
+ * Holds the outcome of converting a value without throwing exceptions, that is either the converted value or an
+ * error message. Can be reused for multiple conversions.
+ *
+ * @author James Buncle
+ */
+public class Conversion {
+
+    private Object value;
+    private String error;
+
+    /**
+     * Record a successful conversion.
+     *
+     * @param value the converted value
+     * @return true
+     */
+    public boolean succeed(final Object value) {
+        this.value = value;
+        this.error = null;
+        return true;
+    }
+
+    /**
+     * Record a failed conversion.
+     *
+     * @param error why the value couldn't be converted
+     * @return false
+     */
+    public boolean fail(final String error) {
+        this.value = null;
+        this.error = error;
+        return false;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+/**
+ * A {@link CharSequence} which fails once a deadline has passed, used to bound the time a regular expression can
+ * spend backtracking over it. The deadline is checked every {@value #CHECK_INTERVAL} character reads.
+ *
+ * @author James Buncle
+ */
+class DeadlineCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 256;
+
+    private final CharSequence value;
+    private final long deadline;
+    private int reads;
+
+    /**
+     * @param value the wrapped characters
+     * @param deadline the deadline, in terms of {@link System#nanoTime()}
+     */
+    public DeadlineCharSequence(final CharSequence value, final long deadline) {
+        this.value = value;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public int length() {
+        return value.length();
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (++reads == CHECK_INTERVAL) {
+            reads = 0;
+            if (System.nanoTime() - deadline > 0) {
+                throw new DeadlineExceededException();
+            }
+        }
+        return value.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        return new DeadlineCharSequence(value.subSequence(start, end), deadline);
+    }
+
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+
+    /**
+     * Thrown when the deadline has passed. Doesn't capture a stack trace, as it's always caught by the parser.
+     */
+    static class DeadlineExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+
+/**
+ * A value which is only computed the first time it's used, then cached. Safe to use from multiple threads; the
+ * value is computed at most once, unless computing it fails.
+ * <br />
+ * Options set through a setter taking a Lazy (or a java.util.function.Supplier) are converted on first use, rather
+ * than when the arguments are parsed.
+ *
+ * @author James Buncle
+ * @param <T>
+ */
+public final class Lazy<T> {
+
+    private static final String SUPPLIER_CLASS = "java.util.function.Supplier";
+
+    private final Object lock = new Object();
+    private Callable<? extends T> callable;
+    private volatile boolean computed;
+    private T value;
+
+    public Lazy(final Callable<? extends T> callable) {
+        this.callable = callable;
+    }
+
+    /**
+     * Get the value, computing it if this is the first use.
+     *
+     * @return the value
+     */
+    public T get() {
+        if (!computed) {
+            synchronized (lock) {
+                if (!computed) {
+                    try {
+                        value = callable.call();
+                    } catch (RuntimeException ex) {
+                        throw ex;
+                    } catch (Exception ex) {
+                        throw new IllegalArgumentException(ex);
+                    }
+                    callable = null;
+                    computed = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return whether the value has been computed yet
+     */
+    public boolean isComputed() {
+        return computed;
+    }
+
+    @Override
+    public String toString() {
+        return computed ? String.valueOf(value) : "Lazy[not computed]";
+    }
+
+    /**
+     * Check whether a type is the Java 8 java.util.function.Supplier interface, which can be implemented by a Lazy.
+     */
+    static boolean isSupplier(final Class<?> type) {
+        return type.isInterface() && type.getName().equals(SUPPLIER_CLASS);
+    }
+
+    /**
+     * Wrap this value in an implementation of the given Supplier interface.
+     */
+    Object toSupplier(final Class<?> supplierType) {
+        return Proxy.newProxyInstance(supplierType.getClassLoader(), new Class<?>[]{supplierType},
+                new SupplierHandler(this));
+    }
+
+    /**
+     * Get the Lazy behind a Lazy or Supplier created by {@link #toSupplier(java.lang.Class)}.
+     *
+     * @return the Lazy, or null if the object isn't one
+     */
+    static Lazy<?> unwrap(final Object object) {
+        if (object instanceof Lazy) {
+            return (Lazy<?>) object;
+        }
+        if (object != null && Proxy.isProxyClass(object.getClass())
+                && Proxy.getInvocationHandler(object) instanceof SupplierHandler) {
+            return ((SupplierHandler) Proxy.getInvocationHandler(object)).lazy;
+        }
+        return null;
+    }
+
+    private static class SupplierHandler implements InvocationHandler {
+
+        private final Lazy<?> lazy;
+
+        private SupplierHandler(final Lazy<?> lazy) {
+            this.lazy = lazy;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+                case "get":
+                    return lazy.get();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return lazy.toString();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An object instance bound to the command line options it was created from, which can be updated in place when the
+ * options change. Only the setters of options whose values have changed are invoked, and the object instance is never
+ * replaced.
+ *
+ * @author James Buncle
+ * @param <T>
+ */
+public class LiveBinding<T> {
+
+    private final CommandLineParser<T> parser;
+    private final T target;
+    private Map<String, String> applied;
+
+    LiveBinding(final CommandLineParser<T> parser, final T target, final Map<String, String> applied) {
+        this.parser = parser;
+        this.target = target;
+        this.applied = applied;
+    }
+
+    /**
+     * Get the bound object instance.
+     *
+     * @return the object instance updated by this binding
+     */
+    public T getTarget() {
+        return target;
+    }
+
+    /**
+     * Apply the given arguments to the bound instance, invoking setters only for options which have been added,
+     * changed or removed since the last arguments were applied. Removed options are restored to their default value.
+     *
+     * @param args
+     * @return the names of the options which changed
+     */
+    public synchronized Set<String> parseDelta(final String[] args) {
+        try {
+            final Map<String, String> argsMap = parser.getOptionsMap(args);
+            final Set<String> changed = parser.applyDelta(target, applied, argsMap);
+            this.applied = argsMap;
+            return changed;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException(Arrays.toString(args), ex);
+        }
+    }
+
+}
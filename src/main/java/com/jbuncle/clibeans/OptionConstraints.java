@@ -0,0 +1,183 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cross-option constraints compiled to bit masks over option ordinals, so checking the options given against every
+ * constraint only takes a few word-wide operations per option.
+ *
+ * @author James Buncle
+ */
+class OptionConstraints {
+
+    private final String[] optionNames;
+    private final int words;
+    private final long[][] requires;
+    private final long[][] excludes;
+    private final String[] groupNames;
+    private final long[][] groups;
+
+    /**
+     * @param annotations options keyed by name, in ordinal order
+     * @param aliases option names keyed by alias
+     */
+    OptionConstraints(final Map<String, CLIOption> annotations, final Map<String, String> aliases) {
+        this.optionNames = annotations.keySet().toArray(new String[annotations.size()]);
+        this.words = (optionNames.length + 63) >>> 6;
+        this.requires = new long[optionNames.length][];
+        this.excludes = new long[optionNames.length][];
+
+        final Map<String, Integer> ordinals = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            ordinals.put(optionNames[ordinal], ordinal);
+        }
+        for (final Map.Entry<String, String> alias : aliases.entrySet()) {
+            ordinals.put(alias.getKey(), ordinals.get(alias.getValue()));
+        }
+
+        final Map<String, long[]> groupMasks = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            final CLIOption annotation = annotations.get(optionNames[ordinal]);
+            if (annotation.requires().length > 0) {
+                requires[ordinal] = compile(annotation.requires(), ordinals, annotation);
+            }
+            if (annotation.excludes().length > 0) {
+                excludes[ordinal] = compile(annotation.excludes(), ordinals, annotation);
+            }
+            if (!annotation.oneOf().isEmpty()) {
+                long[] mask = groupMasks.get(annotation.oneOf());
+                if (mask == null) {
+                    mask = new long[words];
+                    groupMasks.put(annotation.oneOf(), mask);
+                }
+                set(mask, ordinal);
+            }
+        }
+        this.groupNames = groupMasks.keySet().toArray(new String[groupMasks.size()]);
+        this.groups = groupMasks.values().toArray(new long[groupMasks.size()][]);
+    }
+
+    private long[] compile(final String[] names, final Map<String, Integer> ordinals, final CLIOption annotation) {
+        final long[] mask = new long[words];
+        for (final String name : names) {
+            final Integer ordinal = ordinals.get(name);
+            if (ordinal == null) {
+                throw new IllegalArgumentException("Unknown option " + name + " in constraint on " + annotation.name());
+            }
+            set(mask, ordinal);
+        }
+        return mask;
+    }
+
+    private static void set(final long[] mask, final int ordinal) {
+        mask[ordinal >>> 6] |= 1L << ordinal;
+    }
+
+    /**
+     * Check the given options against all constraints.
+     *
+     * @param options the options given, keyed by option name
+     * @return the violated constraints
+     */
+    public List<ConstraintViolation> check(final Map<String, String> options) {
+        final boolean hasGroups = groups.length > 0;
+        final long[] present = new long[words];
+        boolean hasRules = false;
+        for (int ordinal = 0; ordinal < optionNames.length; ordinal++) {
+            if (options.containsKey(optionNames[ordinal])) {
+                set(present, ordinal);
+                hasRules |= requires[ordinal] != null || excludes[ordinal] != null;
+            }
+        }
+        if (!hasRules && !hasGroups) {
+            return Collections.emptyList();
+        }
+
+        final List<ConstraintViolation> violations = new ArrayList<>();
+        for (int word = 0; word < words; word++) {
+            for (long bits = present[word]; bits != 0; bits &= bits - 1) {
+                final int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (requires[ordinal] != null && !containsAll(present, requires[ordinal])) {
+                    violations.add(new ConstraintViolation(ConstraintViolation.Type.REQUIRES, optionNames[ordinal],
+                            names(requires[ordinal], present, true)));
+                }
+                if (excludes[ordinal] != null && intersects(present, excludes[ordinal])) {
+                    violations.add(new ConstraintViolation(ConstraintViolation.Type.EXCLUDES, optionNames[ordinal],
+                            names(excludes[ordinal], present, false)));
+                }
+            }
+        }
+        for (int group = 0; group < groups.length; group++) {
+            int count = 0;
+            for (int word = 0; word < words; word++) {
+                count += Long.bitCount(groups[group][word] & present[word]);
+            }
+            if (count != 1) {
+                violations.add(new ConstraintViolation(ConstraintViolation.Type.ONE_OF, groupNames[group],
+                        names(groups[group], present, count == 0)));
+            }
+        }
+        return violations;
+    }
+
+    private boolean containsAll(final long[] present, final long[] mask) {
+        for (int word = 0; word < words; word++) {
+            if ((mask[word] & ~present[word]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean intersects(final long[] present, final long[] mask) {
+        for (int word = 0; word < words; word++) {
+            if ((mask[word] & present[word]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the names of the options in the mask which are present, or which are missing if inverted.
+     */
+    private Set<String> names(final long[] mask, final long[] present, final boolean missing) {
+        final Set<String> names = new LinkedHashSet<>();
+        for (int word = 0; word < words; word++) {
+            final long bits = missing ? mask[word] & ~present[word] : mask[word] & present[word];
+            for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+                names.add(optionNames[(word << 6) + Long.numberOfTrailingZeros(remaining)]);
+            }
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of {@link CommandLineParser#tryParseArguments(java.lang.String[])}, holding either the new object
+ * instance or why the arguments were rejected.
+ *
+ * @author James Buncle
+ * @param <T>
+ */
+public class ParseResult<T> {
+
+    private final T value;
+    private final Map<String, String> errors;
+
+    private ParseResult(final T value, final Map<String, String> errors) {
+        this.value = value;
+        this.errors = errors;
+    }
+
+    static <T> ParseResult<T> success(final T value) {
+        return new ParseResult<>(value, Collections.<String, String>emptyMap());
+    }
+
+    static <T> ParseResult<T> failure(final Map<String, String> errors) {
+        return new ParseResult<>(null, Collections.unmodifiableMap(errors));
+    }
+
+    /**
+     * @return whether the arguments were valid, and the object instance was created
+     */
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    /**
+     * @return the new object instance, or null if the arguments were invalid
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return error messages keyed by option name, empty if the arguments were valid
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+}
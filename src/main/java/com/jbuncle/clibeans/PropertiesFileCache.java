@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of loaded properties files, keyed by path and invalidated when the file's modification time or length
+ * changes, so repeated parses don't re-read or re-parse an unchanged file. The length catches most rewrites made
+ * within the resolution of the modification time.
+ *
+ * @author James Buncle
+ */
+class PropertiesFileCache {
+
+    private static final ConcurrentMap<String, CachedProperties> CACHE = new ConcurrentHashMap<>();
+
+    private PropertiesFileCache() {
+    }
+
+    /**
+     * Load the given properties file, using the cached copy if the file's modification time and length haven't
+     * changed since it was last read.
+     * A file that doesn't exist is treated as empty.
+     *
+     * @param file the properties file
+     * @return the loaded properties, which must not be modified by the caller
+     */
+    public static Properties load(final File file) {
+        final String path = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final CachedProperties cached = CACHE.get(path);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached.properties;
+        }
+        final Properties properties = new Properties();
+        if (lastModified != 0L) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException(path, ex);
+            }
+        }
+        CACHE.put(path, new CachedProperties(lastModified, length, properties));
+        return properties;
+    }
+
+    private static class CachedProperties {
+
+        private final long lastModified;
+        private final long length;
+        private final Properties properties;
+
+        private CachedProperties(final long lastModified, final long length, final Properties properties) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.properties = properties;
+        }
+    }
+
+}
@@ -27,8 +27,17 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -80,9 +89,248 @@ public class Utils {
         if (File.class == targetType) {
             return new File(value);
         }
+        if (Path.class == targetType) {
+            return Paths.get(value);
+        }
         return value;
     }
 
+    /**
+     * Convert a string to the given type, sharing equal values through a pool.
+     *
+     * @param targetType the type to convert to
+     * @param value the string value
+     * @param valuePool the pool to share values through, or null for none
+     * @return the converted value
+     */
+    public static Object stringToType(final Class<?> targetType, final String value, final ValuePool valuePool) {
+        final Object converted = stringToType(targetType, value);
+        return valuePool != null ? valuePool.intern(converted) : converted;
+    }
+
+    /**
+     * Convert a string to the given type, as with {@link #stringToType(java.lang.Class, java.lang.String)}, but
+     * reporting invalid values through the conversion rather than by throwing an exception. Numbers must be in plain
+     * decimal notation.
+     *
+     * @param targetType the type to convert to
+     * @param value the string value
+     * @param conversion holds the converted value, or the error if the value is invalid
+     * @return whether the value was converted
+     */
+    public static boolean tryStringToType(final Class<?> targetType, final String value, final Conversion conversion) {
+        if (value == null) {
+            if ((targetType.isPrimitive() && targetType != Boolean.TYPE) || Number.class.isAssignableFrom(targetType)
+                    || targetType == File.class || targetType == Path.class) {
+                return conversion.fail("Missing value");
+            }
+            return conversion.succeed(stringToType(targetType, value));
+        }
+        if (Boolean.class == targetType || Boolean.TYPE == targetType) {
+            return conversion.succeed(Boolean.parseBoolean(value));
+        }
+        if (Byte.class == targetType || Byte.TYPE == targetType) {
+            return tryParseInteger(value, Byte.MIN_VALUE, Byte.MAX_VALUE, Byte.TYPE, conversion);
+        }
+        if (Short.class == targetType || Short.TYPE == targetType) {
+            return tryParseInteger(value, Short.MIN_VALUE, Short.MAX_VALUE, Short.TYPE, conversion);
+        }
+        if (Integer.class == targetType || Integer.TYPE == targetType) {
+            return tryParseInteger(value, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.TYPE, conversion);
+        }
+        if (Long.class == targetType || Long.TYPE == targetType) {
+            return tryParseInteger(value, Long.MIN_VALUE, Long.MAX_VALUE, Long.TYPE, conversion);
+        }
+        if (Float.class == targetType || Float.TYPE == targetType
+                || Double.class == targetType || Double.TYPE == targetType) {
+            if (!isDecimal(value)) {
+                return conversion.fail("Invalid number");
+            }
+            return conversion.succeed(stringToType(targetType, value));
+        }
+        if (Path.class == targetType && value.indexOf('\0') >= 0) {
+            return conversion.fail("Invalid path");
+        }
+        return conversion.succeed(stringToType(targetType, value));
+    }
+
+    /**
+     * Parse a decimal integer within the given range, without throwing exceptions.
+     */
+    private static boolean tryParseInteger(final String value, final long min, final long max, final Class<?> type,
+            final Conversion conversion) {
+        final int length = value.length();
+        int index = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            index++;
+        }
+        if (index == length) {
+            return conversion.fail("Invalid number");
+        }
+        //Accumulate negatively, as the negative range is the larger
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; index < length; index++) {
+            final int digit = Character.digit(value.charAt(index), 10);
+            if (digit < 0) {
+                return conversion.fail("Invalid number");
+            }
+            if (result < multiplyLimit || result * 10 < limit + digit) {
+                return conversion.fail("Number out of range");
+            }
+            result = result * 10 - digit;
+        }
+        result = negative ? result : -result;
+        if (result < min || result > max) {
+            return conversion.fail("Number out of range");
+        }
+        if (type == Byte.TYPE) {
+            return conversion.succeed((byte) result);
+        } else if (type == Short.TYPE) {
+            return conversion.succeed((short) result);
+        } else if (type == Integer.TYPE) {
+            return conversion.succeed((int) result);
+        }
+        return conversion.succeed(result);
+    }
+
+    /**
+     * Check whether a string is a decimal number (optionally with an exponent and float/double suffix), NaN or
+     * Infinity, so can be parsed as a double without throwing an exception.
+     */
+    private static boolean isDecimal(final String value) {
+        final String number = value.trim();
+        final int length = number.length();
+        int index = 0;
+        if (index < length && (number.charAt(index) == '-' || number.charAt(index) == '+')) {
+            index++;
+        }
+        final String rest = number.substring(index);
+        if (rest.equals("NaN") || rest.equals("Infinity")) {
+            return true;
+        }
+        int digits = 0;
+        while (index < length && isAsciiDigit(number.charAt(index))) {
+            index++;
+            digits++;
+        }
+        if (index < length && number.charAt(index) == '.') {
+            index++;
+            while (index < length && isAsciiDigit(number.charAt(index))) {
+                index++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (index < length && (number.charAt(index) == 'e' || number.charAt(index) == 'E')) {
+            index++;
+            if (index < length && (number.charAt(index) == '-' || number.charAt(index) == '+')) {
+                index++;
+            }
+            final int exponentStart = index;
+            while (index < length && isAsciiDigit(number.charAt(index))) {
+                index++;
+            }
+            if (index == exponentStart) {
+                return false;
+            }
+        }
+        if (index < length && "fFdD".indexOf(number.charAt(index)) >= 0) {
+            index++;
+        }
+        return index == length;
+    }
+
+    private static boolean isAsciiDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Convert a value to a string which {@link #stringToType(java.lang.Class, java.lang.String)} converts back to an
+     * equal value.
+     *
+     * @param value the value
+     * @return the value as a string
+     */
+    public static String typeToString(final Object value) {
+        if (value instanceof File) {
+            return ((File) value).getPath();
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Append an argument, quoted for a POSIX shell if it contains anything other than safe characters.
+     *
+     * @param arg the argument
+     * @param out where to append the argument
+     * @throws IOException
+     */
+    public static void appendQuoted(final String arg, final Appendable out) throws IOException {
+        boolean safe = !arg.isEmpty();
+        for (int index = 0; safe && index < arg.length(); index++) {
+            final char c = arg.charAt(index);
+            safe = Character.isLetterOrDigit(c) || "-_=.,/:@+%".indexOf(c) >= 0;
+        }
+        if (safe) {
+            out.append(arg);
+            return;
+        }
+        out.append('\'');
+        for (int index = 0; index < arg.length(); index++) {
+            final char c = arg.charAt(index);
+            if (c == '\'') {
+                out.append("'\\''");
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('\'');
+    }
+
+    /**
+     * Get the value of the given type when no value is given, that is null for objects or zero/false for primitives.
+     *
+     * @param targetType the type
+     * @return the empty value for the type
+     */
+    public static Object getEmptyValue(final Class<?> targetType) {
+        if (!targetType.isPrimitive()) {
+            return null;
+        }
+        if (Boolean.TYPE == targetType) {
+            return false;
+        }
+        if (Character.TYPE == targetType) {
+            return '\0';
+        }
+        return stringToType(targetType, "0");
+    }
+
+    /**
+     * Read CLI arguments from a file, one argument per line. Lines are trimmed, and blank lines or lines starting
+     * with a hash (#) are ignored.
+     *
+     * @param file the argument file
+     * @return the arguments read from the file
+     * @throws IOException
+     */
+    public static String[] readArgumentFile(final Path file) throws IOException {
+        final List<String> args = new ArrayList<>();
+        for (final String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            final String arg = line.trim();
+            if (!arg.isEmpty() && !arg.startsWith("#")) {
+                args.add(arg);
+            }
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
     /**
      * Parse CLI Options into a name-value map.
      * 
@@ -90,11 +338,31 @@ public class Utils {
      * @return parsed map.
      */
     public static Map<String, String> parseCliOptions(String[] args) {
+        return parseCliOptions(args, Collections.<String>emptySet(), null);
+    }
+
+    /**
+     * Parse CLI Options into a name-value map, collecting operands (arguments which aren't options or option
+     * arguments). A double dash (--) argument ends the options, and all arguments after it are operands, even if they
+     * start with a dash. A single dash (-) argument is treated as an operand.
+     *
+     * @param args Raw CLI arguments
+     * @param flags names of the options which never take an argument
+     * @param operands list to add operands to, or null to ignore operands
+     * @return parsed map.
+     */
+    public static Map<String, String> parseCliOptions(String[] args, Set<String> flags, List<String> operands) {
         final Map<String, String> optionsMap = new LinkedHashMap<>();
         for (int index = 0; index < args.length; index++) {
             //Loop through and find options (which may be followed by values)
             final String arg = args[index];
-            if (arg.startsWith("-")) {
+            if (arg.equals("--")) {
+                //End of options, everything else is an operand
+                if (operands != null) {
+                    operands.addAll(Arrays.asList(args).subList(index + 1, args.length));
+                }
+                break;
+            } else if (arg.startsWith("-") && arg.length() > 1) {
 
                 //Remove the preceeding dash
                 String optionName = arg.substring(1);
@@ -104,9 +372,10 @@ public class Utils {
                     //Handle -option=argument pairs
                     value = optionName.substring(optionName.indexOf("=") + 1);
                     optionName = optionName.substring(0, optionName.indexOf("="));
-                } else if (index < args.length - 1 && !args[index + 1].startsWith("-")) {
+                } else if (!flags.contains(optionName)
+                        && index < args.length - 1 && !args[index + 1].startsWith("-")) {
                     //Handle space separated '-option argument' pairs
-                    value = args[index + 1];
+                    value = args[++index];
                 } else {
                     //Treat as flag
                     value = null;
@@ -114,6 +383,8 @@ public class Utils {
 
                 optionsMap.put(optionName, value);
 
+            } else if (operands != null) {
+                operands.add(arg);
             }
         }
         return optionsMap;
@@ -0,0 +1,196 @@
+/*
+ *  Copyright (c) 2014 James Buncle
+ * 
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ * 
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ * 
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ * 
+ */
+package com.jbuncle.clibeans;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded pool of weakly referenced immutable values, used to share equal converted option values between the
+ * objects created by a parser, rather than holding a separate copy in each. Values are only pooled if their class
+ * has been registered as immutable; strings, primitive wrappers, files and paths are registered by default.
+ * <br />
+ * When the pool is full the least recently used value is dropped to make room, so values which are only seen once
+ * don't stop later repeated values from being shared.
+ *
+ * @author James Buncle
+ */
+public class ValuePool {
+
+    private final int maxSize;
+    private final Map<PooledValue, PooledValue> pool;
+    private final ReferenceQueue<Object> cleared;
+    private final Set<Class<?>> immutableTypes;
+    private long lookups;
+    private long hits;
+    private long bytesSaved;
+
+    /**
+     * @param maxSize the maximum number of distinct values to hold, beyond which the least recently used is dropped
+     */
+    public ValuePool(final int maxSize) {
+        this.maxSize = maxSize;
+        this.cleared = new ReferenceQueue<>();
+        this.pool = new LinkedHashMap<PooledValue, PooledValue>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<PooledValue, PooledValue> eldest) {
+                return size() > ValuePool.this.maxSize;
+            }
+        };
+        this.immutableTypes = new HashSet<>(Arrays.<Class<?>>asList(
+                String.class, Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+                Double.class, Character.class, BigInteger.class, BigDecimal.class, File.class));
+    }
+
+    /**
+     * Register a class whose instances are immutable, so can safely be shared.
+     *
+     * @param type the immutable class
+     */
+    public synchronized void addImmutableType(final Class<?> type) {
+        this.immutableTypes.add(type);
+    }
+
+    /**
+     * Get the pooled value equal to the given value, adding it to the pool if there isn't one. Values of classes not
+     * registered as immutable are returned as they are.
+     *
+     * @param <V>
+     * @param value the value
+     * @return an equal pooled value, or the given value
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V intern(final V value) {
+        if (value == null || !isImmutable(value.getClass())) {
+            return value;
+        }
+        expungeCleared();
+        lookups++;
+        final PooledValue reference = pool.get(new PooledValue(value, null));
+        final Object pooled = reference != null ? reference.get() : null;
+        if (pooled != null) {
+            hits++;
+            if (pooled != value) {
+                bytesSaved += estimateSize(value);
+            }
+            return (V) pooled;
+        }
+        final PooledValue added = new PooledValue(value, cleared);
+        pool.put(added, added);
+        return value;
+    }
+
+    private void expungeCleared() {
+        for (Reference<?> reference = cleared.poll(); reference != null; reference = cleared.poll()) {
+            pool.remove(reference);
+        }
+    }
+
+    private boolean isImmutable(final Class<?> type) {
+        return immutableTypes.contains(type) || type.isEnum() || Path.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Roughly estimate the heap size of a value, assuming compressed references.
+     */
+    private static long estimateSize(final Object value) {
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof File || value instanceof Path) {
+            return 56 + 2L * value.toString().length();
+        }
+        return 16;
+    }
+
+    public synchronized int size() {
+        expungeCleared();
+        return pool.size();
+    }
+
+    /**
+     * @return the number of values looked up in the pool
+     */
+    public synchronized long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return the number of looked up values for which an equal pooled value was found
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the estimated number of bytes saved by sharing pooled values, rather than keeping equal copies.
+     *
+     * @return the estimated bytes saved
+     */
+    public synchronized long getEstimatedBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * A weak reference to a pooled value, equal to references to equal values. A cleared reference is only equal to
+     * itself, so it can still be removed.
+     */
+    private static class PooledValue extends WeakReference<Object> {
+
+        private final int hashCode;
+
+        private PooledValue(final Object value, final ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.hashCode = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PooledValue)) {
+                return false;
+            }
+            final Object value = get();
+            return value != null && value.equals(((PooledValue) other).get());
+        }
+    }
+
+}
@@ -24,17 +24,33 @@ package com.jbuncle.clibeans;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -98,6 +114,97 @@ public class CommandLineParserTest {
 
     }
 
+    @Test
+    public void testToArgs() throws IOException {
+        System.out.println("toArgs");
+        CommandLineParser<TestClass> instance = new CommandLineParser<>(TestClass.class);
+        instance.registerPropertyEditor(Date.class, new ReversiblePropertyEditor<Date>() {
+
+            @Override
+            public Date getObject(String string) {
+                return new Date(Long.parseLong(string));
+            }
+
+            @Override
+            public String getString(Date object) {
+                return Long.toString(object.getTime());
+            }
+        });
+        final TestClass original = instance.parseArguments(new String[]{
+            "-myproperty=-dashed value's", "-number", "42", "-requiredProperty", "-date", "1000", "-a", ""});
+        final String[] args = instance.toArgs(original);
+        assertArrayEquals(new String[]{
+            "-myproperty=-dashed value's", "-requiredProperty", "-number=42", "-date=1000", "-aliased="}, sortLike(args));
+
+        final TestClass copy = instance.parseArguments(args);
+        assertEquals(original.getMyProperty(), copy.getMyProperty());
+        assertEquals(original.getNumericProperty(), copy.getNumericProperty());
+        assertEquals(original.getRequiredProperty(), copy.getRequiredProperty());
+        assertEquals(original.isUppercase(), copy.isUppercase());
+        assertEquals(original.getDate(), copy.getDate());
+        assertEquals(original.getAliased(), copy.getAliased());
+
+        assertEquals(0, instance.toArgs(instance.parseArguments(new String[]{})).length);
+
+        final StringBuilder commandLine = new StringBuilder();
+        instance.toArgs(instance.parseArguments(new String[]{"-myproperty", "it's", "-number", "1"}), commandLine);
+        //Option order follows the unspecified method order
+        assertTrue(commandLine.toString(), commandLine.toString().equals("'-myproperty=it'\\''s' -number=1")
+                || commandLine.toString().equals("-number=1 '-myproperty=it'\\''s'"));
+
+        //Null can't be written for an option with a default, so would round trip to the default
+        CommandLineParser<LayeredObject> layered = new CommandLineParser<>(LayeredObject.class);
+        layered.setEnvironment(new HashMap<String, String>());
+        final LayeredObject bean = layered.parseArguments(new String[]{"-zone", "z"});
+        assertArrayEquals(new String[]{"-zone=z"}, layered.toArgs(bean));
+        bean.setZone(null);
+        try {
+            layered.toArgs(bean);
+            fail("Expected null zone to be rejected");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+
+        //Values from the environment are what parsing no arguments gives, so are compared against instead
+        final Map<String, String> environment = new HashMap<>();
+        environment.put("LAYERED_REGION", "env-region");
+        environment.put("LAYERED_VERBOSE", "true");
+        layered.setEnvironment(environment);
+        final LayeredObject fromEnvironment = layered.parseArguments(new String[]{"-zone", "z"});
+        assertArrayEquals(new String[]{"-zone=z"}, layered.toArgs(fromEnvironment));
+        fromEnvironment.setRegion("cli-region");
+        assertEquals("cli-region", layered.parseArguments(layered.toArgs(fromEnvironment)).getRegion());
+        fromEnvironment.setRegion(null);
+        try {
+            layered.toArgs(fromEnvironment);
+            fail("Expected null region to be rejected");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+        fromEnvironment.setRegion("env-region");
+        fromEnvironment.setVerbose(false);
+        try {
+            layered.toArgs(fromEnvironment);
+            fail("Expected disabled verbose to be rejected");
+        } catch (IllegalStateException ex) {
+            //Expected
+        }
+    }
+
+    private static String[] sortLike(String[] args) {
+        final String[] order = {"-myproperty", "-requiredProperty", "-number", "-date", "-aliased"};
+        final String[] sorted = new String[args.length];
+        int index = 0;
+        for (String prefix : order) {
+            for (String arg : args) {
+                if (arg.equals(prefix) || arg.startsWith(prefix + "=")) {
+                    sorted[index++] = arg;
+                }
+            }
+        }
+        return sorted;
+    }
+
     @Test
     public void testAliases() {
         System.out.println("aliases");
@@ -123,6 +230,40 @@ public class CommandLineParserTest {
         assertEquals("value", testResult.getAliases());
     }
 
+    @Test
+    public void testBindMap() {
+        System.out.println("bindMap");
+        CommandLineParser<TestClass> instance = new CommandLineParser<>(TestClass.class);
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("myproperty", "Hello world");
+        parameters.put("a", new String[]{"aliased value", "ignored"});
+        parameters.put("number", 12);
+        parameters.put("requiredProperty", null);
+        parameters.put("unknown", "ignored");
+        assertEquals(0, instance.validate(parameters).size());
+
+        TestClass result = instance.bind(parameters);
+        assertEquals("Hello world", result.getMyProperty());
+        assertEquals("aliased value", result.getAliased());
+        assertEquals(12, result.getNumericProperty());
+        assertTrue(result.getRequiredProperty());
+        assertFalse(result.isUppercase());
+
+        parameters.put("number", "NaN");
+        assertEquals(Collections.singleton("number"), instance.validate(parameters));
+
+        //Flags given as request parameters are only set when enabled
+        parameters.put("number", "1");
+        parameters.put("uppercase", "false");
+        assertFalse(instance.bind(parameters).isUppercase());
+        parameters.put("uppercase", new String[]{"true"});
+        assertTrue(instance.bind(parameters).isUppercase());
+        parameters.put("uppercase", "");
+        assertTrue(instance.bind(parameters).isUppercase());
+        parameters.put("requiredProperty", Boolean.FALSE);
+        assertEquals(Collections.singleton("requiredProperty"), instance.validate(parameters));
+    }
+
     @Test
     public void testValidate() {
         System.out.println("validate");
@@ -139,9 +280,583 @@ public class CommandLineParserTest {
         //Regex Test success
         result = instance.validate(new String[]{"-requiredProperty", "-a", "-number", "1"});
         assertEquals(0, result.size());
+        //The result is the caller's to modify
+        result.add("extra");
+        assertTrue(result.contains("extra"));
 
     }
 
+    @Test
+    public void testBoundedValidation() {
+        System.out.println("boundedValidation");
+        CommandLineParser<RegexObject> instance = new CommandLineParser<>(RegexObject.class);
+        instance.setRegexTimeout(50, TimeUnit.MILLISECONDS);
+        assertEquals(0, instance.validate(new String[]{"-pattern", "aaab"}).size());
+
+        final StringBuilder crafted = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            crafted.append('a');
+        }
+        crafted.append('!');
+        final long start = System.nanoTime();
+        Set<String> result = instance.validate(new String[]{"-pattern", crafted.toString()});
+        assertEquals(Collections.singleton("pattern"), result);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+        result = instance.validate(new String[]{"-short", "abcdef"});
+        assertEquals(Collections.singleton("short"), result);
+        result = instance.validate(new String[]{"-short", "abc"});
+        assertEquals(0, result.size());
+    }
+
+    public static class RegexObject {
+
+        private String pattern;
+        private String shortValue;
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        @CLIOption(name = "pattern", regex = "(a+)+b")
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public String getShort() {
+            return shortValue;
+        }
+
+        @CLIOption(name = "short", maxLength = 4)
+        public void setShort(String shortValue) {
+            this.shortValue = shortValue;
+        }
+    }
+
+    @Test
+    public void testFactoryBinding() {
+        System.out.println("factoryBinding");
+        CommandLineParser<ImmutableObject> instance = new CommandLineParser<>(ImmutableObject.class);
+        ImmutableObject result = instance.parseArguments(new String[]{"-name", "value", "-count", "3", "-force"});
+        assertEquals("value", result.getName());
+        assertEquals(3, result.getCount());
+        assertTrue(result.isForce());
+
+        result = instance.parseArguments(new String[]{});
+        assertNull(result.getName());
+        assertEquals(10, result.getCount());
+        assertFalse(result.isForce());
+        assertEquals(1, instance.validate(new String[]{"-count", "x"}).size());
+
+        CommandLineParser<FactoryObject> factoryInstance = new CommandLineParser<>(FactoryObject.class);
+        FactoryObject factoryResult = factoryInstance.parseArguments(new String[]{"-id", "7"});
+        assertEquals(7L, factoryResult.getId());
+    }
+
+    public static final class ImmutableObject {
+
+        private final String name;
+        private final int count;
+        private final boolean force;
+
+        public ImmutableObject(
+                @CLIOption(name = "name") String name,
+                @CLIOption(name = "count", defaultValue = "10", regex = "[0-9]+") int count,
+                @CLIOption(name = "force", flag = true) boolean force) {
+            this.name = name;
+            this.count = count;
+            this.force = force;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isForce() {
+            return force;
+        }
+    }
+
+    public static final class FactoryObject {
+
+        private final long id;
+
+        private FactoryObject(long id) {
+            this.id = id;
+        }
+
+        @CLIFactory
+        public static FactoryObject create(@CLIOption(name = "id") long id) {
+            return new FactoryObject(id);
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+    @Test
+    public void testConstraints() {
+        System.out.println("constraints");
+        CommandLineParser<ConstrainedObject> instance = new CommandLineParser<>(ConstrainedObject.class);
+        assertTrue(instance.checkConstraints(new String[]{"-output", "x", "-format", "json", "-dry-run"}).isEmpty());
+        assertTrue(instance.validate(new String[]{"-output", "x", "-f", "json", "-force"}).isEmpty());
+
+        List<ConstraintViolation> violations = instance.checkConstraints(new String[]{"-output", "x", "-force"});
+        assertEquals(1, violations.size());
+        assertEquals(ConstraintViolation.Type.REQUIRES, violations.get(0).getType());
+        assertEquals("output", violations.get(0).getOption());
+        assertEquals(Collections.singleton("format"), violations.get(0).getRelatedOptions());
+
+        violations = instance.checkConstraints(new String[]{"-dry-run", "-force"});
+        assertEquals(2, violations.size());
+        assertEquals(ConstraintViolation.Type.EXCLUDES, violations.get(0).getType());
+        assertEquals(ConstraintViolation.Type.ONE_OF, violations.get(1).getType());
+        assertEquals(new HashSet<>(Arrays.asList("dry-run", "force")), violations.get(1).getRelatedOptions());
+
+        violations = instance.checkConstraints(new String[]{});
+        assertEquals(1, violations.size());
+        assertEquals("mode", violations.get(0).getOption());
+        assertEquals(new HashSet<>(Arrays.asList("dry-run", "force")), instance.validate(new String[]{}));
+    }
+
+    public static class ConstrainedObject {
+
+        private String output;
+        private String format;
+        private boolean dryRun;
+        private boolean force;
+
+        public String getOutput() {
+            return output;
+        }
+
+        @CLIOption(name = "output", requires = "f")
+        public void setOutput(String output) {
+            this.output = output;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        @CLIOption(name = "format", alias = "f")
+        public void setFormat(String format) {
+            this.format = format;
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        @CLIOption(name = "dry-run", flag = true, excludes = "force", oneOf = "mode")
+        public void setDryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        public boolean isForce() {
+            return force;
+        }
+
+        @CLIOption(name = "force", flag = true, oneOf = "mode")
+        public void setForce(boolean force) {
+            this.force = force;
+        }
+    }
+
+    @Test
+    public void testOperands() {
+        System.out.println("operands");
+        CommandLineParser<OperandsObject> instance = new CommandLineParser<>(OperandsObject.class);
+        OperandsObject result = instance.parseArguments(
+                new String[]{"in.txt", "-verbose", "out.txt", "-level", "3", "-", "--", "-dashed.txt", "--"});
+        assertTrue(result.isVerbose());
+        assertEquals(3, result.getLevel());
+        final Iterator<Path> paths = result.getPaths();
+        assertEquals(Paths.get("in.txt"), paths.next());
+        assertEquals(Paths.get("out.txt"), paths.next());
+        assertEquals(Paths.get("-"), paths.next());
+        assertEquals(Paths.get("-dashed.txt"), paths.next());
+        assertEquals(Paths.get("--"), paths.next());
+        assertFalse(paths.hasNext());
+
+        final List<String> args = Arrays.asList(instance.toArgs(result));
+        assertEquals(Arrays.asList("--", "in.txt", "out.txt", "-", "-dashed.txt", "--"),
+                args.subList(args.size() - 6, args.size()));
+        final OperandsObject copy = instance.parseArguments(args.toArray(new String[args.size()]));
+        assertTrue(copy.isVerbose());
+        assertEquals(3, copy.getLevel());
+        assertEquals(Paths.get("in.txt"), copy.getPaths().next());
+
+        result = instance.parseArguments(new String[]{"-level", "1"});
+        assertFalse(result.getPaths().hasNext());
+        assertArrayEquals(new String[]{"-level=1"}, instance.toArgs(result));
+
+        result = instance.bind(Collections.singletonMap("level", "2"));
+        assertFalse(result.getPaths().hasNext());
+
+        try {
+            instance.parseLive(new String[]{"in.txt"});
+            fail("Operands can't be updated live");
+        } catch (UnsupportedOperationException ex) {
+            //Expected
+        }
+        try {
+            instance.newTable();
+            fail("Operands can't be held in a table");
+        } catch (UnsupportedOperationException ex) {
+            //Expected
+        }
+    }
+
+    public static class OperandsObject {
+
+        private boolean verbose;
+        private int level;
+        private Iterator<Path> paths;
+
+        public boolean isVerbose() {
+            return verbose;
+        }
+
+        @CLIOption(name = "verbose", flag = true)
+        public void setVerbose(boolean verbose) {
+            this.verbose = verbose;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @CLIOption(name = "level")
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public Iterator<Path> getPaths() {
+            return paths;
+        }
+
+        @CLIOperands
+        public void setPaths(Iterator<Path> paths) {
+            this.paths = paths;
+        }
+    }
+
+    @Test
+    public void testValuePool() {
+        System.out.println("valuePool");
+        CommandLineParser<LayeredObject> instance = new CommandLineParser<>(LayeredObject.class);
+        instance.setEnvironment(new HashMap<String, String>());
+        //Room for the region, first name and default zone
+        final ValuePool pool = new ValuePool(3);
+        instance.setValuePool(pool);
+
+        final LayeredObject first = instance.parseArguments(new String[]{"-region", new String("eu-west-1"), "-name", "a"});
+        final LayeredObject second = instance.parseArguments(new String[]{"-region", new String("eu-west-1"), "-name", "b"});
+        assertSame(first.getRegion(), second.getRegion());
+        assertNotSame(first.getName(), second.getName());
+        assertTrue(pool.getHits() > 0);
+        assertTrue(pool.getEstimatedBytesSaved() > 0);
+        assertEquals(3, pool.size());
+
+        //Pool is full, so the least recently used values make room for new ones
+        final LayeredObject third = instance.parseArguments(new String[]{"-region", new String("us-east-1")});
+        final LayeredObject fourth = instance.parseArguments(new String[]{"-region", new String("us-east-1")});
+        assertSame(third.getRegion(), fourth.getRegion());
+        assertEquals(3, pool.size());
+        //Values seen once don't stop a repeated value being shared
+        final String region = instance.parseArguments(new String[]{"-region", new String("eu-west-1")}).getRegion();
+        for (int i = 0; i < 10; i++) {
+            final LayeredObject row = instance.parseArguments(
+                    new String[]{"-region", new String("eu-west-1"), "-name", "unique" + i});
+            assertSame(region, row.getRegion());
+        }
+
+        //Primitive options aren't shared, so aren't counted
+        CommandLineParser<TableObject> primitives = new CommandLineParser<>(TableObject.class);
+        final ValuePool primitivePool = new ValuePool(3);
+        primitives.setValuePool(primitivePool);
+        primitives.parseArguments(new String[]{"-count", "1000", "-size", "1000"});
+        primitives.parseArguments(new String[]{"-count", "1000", "-size", "1000"});
+        assertEquals(0, primitivePool.getLookups());
+        assertEquals(0, primitivePool.getEstimatedBytesSaved());
+    }
+
+    @Test
+    public void testBeanTable() {
+        System.out.println("beanTable");
+        CommandLineParser<TableObject> instance = new CommandLineParser<>(TableObject.class);
+        final List<String[]> argsList = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                argsList.add(new String[]{"-count", Integer.toString(i), "-region", "region" + (i % 3), "-enabled"});
+            } else {
+                argsList.add(new String[]{"-size", Long.toString(i * 1000000000L), "-ratio", "0.5"});
+            }
+        }
+        final BeanTable<TableObject> table = instance.parseTable(argsList);
+        assertEquals(100, table.size());
+        final int count = table.getOrdinal("count");
+        final int size = table.getOrdinal("size");
+        final int ratio = table.getOrdinal("ratio");
+        final int region = table.getOrdinal("region");
+        final int enabled = table.getOrdinal("enabled");
+
+        assertTrue(table.isPresent(4, count));
+        assertEquals(4, table.getInt(4, count));
+        assertEquals("region1", table.getString(4, region));
+        assertTrue(table.getBoolean(4, enabled));
+        assertEquals(1.0, table.getDouble(4, ratio), 0.0);
+
+        assertFalse(table.isPresent(5, count));
+        assertEquals(7, table.getInt(5, count));
+        assertEquals(5000000000L, table.getLong(5, size));
+        assertNull(table.getString(5, region));
+        assertFalse(table.getBoolean(5, enabled));
+
+        long total = 0;
+        for (int row = 0; row < table.size(); row++) {
+            total += table.getInt(row, count);
+        }
+        assertEquals(2450 + 50 * 7, total);
+
+        final TableObject bean = table.materialize(5);
+        assertEquals(7, bean.getCount());
+        assertEquals(5000000000L, bean.getSize());
+        assertEquals(0.5, bean.getRatio(), 0.0);
+        assertNull(bean.getRegion());
+        assertFalse(bean.isEnabled());
+        final TableObject other = table.materialize(4);
+        assertEquals("region1", other.getRegion());
+        assertTrue(other.isEnabled());
+
+        //A row which can't be converted leaves nothing behind
+        final BeanTable<TableObject> failed = instance.newTable();
+        try {
+            failed.add(new String[]{"-region", "r1", "-count", "x"});
+            fail("Expected invalid count");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+        assertEquals(0, failed.size());
+        assertEquals(0, failed.add(new String[]{}));
+        assertFalse(failed.isPresent(0, failed.getOrdinal("region")));
+        assertNull(failed.materialize(0).getRegion());
+        assertEquals(7, failed.materialize(0).getCount());
+
+        //Mutable defaults aren't shared between instances
+        CommandLineParser<DatedObject> dated = new CommandLineParser<>(DatedObject.class);
+        dated.registerPropertyEditor(Date.class, new PropertyEditor<Date>() {
+
+            @Override
+            public Date getObject(String string) {
+                return new Date(Long.parseLong(string));
+            }
+        });
+        final BeanTable<DatedObject> datedTable = dated.parseTable(
+                Arrays.asList(new String[0], new String[0], new String[]{"-since", "2000"}));
+        final DatedObject first = datedTable.materialize(0);
+        first.getSince().setTime(0L);
+        assertEquals(1000L, datedTable.materialize(1).getSince().getTime());
+        assertEquals(1000L, datedTable.materialize(0).getSince().getTime());
+        //Nor are given values, between instances from the same row
+        final DatedObject given = datedTable.materialize(2);
+        given.getSince().setTime(0L);
+        assertEquals(2000L, datedTable.materialize(2).getSince().getTime());
+        assertEquals(2000L, ((Date) datedTable.getObject(2, datedTable.getOrdinal("since"))).getTime());
+    }
+
+    public static class DatedObject {
+
+        private Date since;
+
+        public Date getSince() {
+            return since;
+        }
+
+        @CLIOption(name = "since", defaultValue = "1000")
+        public void setSince(Date since) {
+            this.since = since;
+        }
+    }
+
+    public static class TableObject {
+
+        private int count;
+        private long size;
+        private double ratio;
+        private String region;
+        private boolean enabled;
+
+        public int getCount() {
+            return count;
+        }
+
+        @CLIOption(name = "count", defaultValue = "7")
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @CLIOption(name = "size")
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public double getRatio() {
+            return ratio;
+        }
+
+        @CLIOption(name = "ratio", defaultValue = "1.0")
+        public void setRatio(double ratio) {
+            this.ratio = ratio;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        @CLIOption(name = "region")
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @CLIOption(name = "enabled", flag = true)
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    @Test
+    public void testTryParseArguments() {
+        System.out.println("tryParseArguments");
+        CommandLineParser<TableObject> instance = new CommandLineParser<>(TableObject.class);
+        ParseResult<TableObject> result = instance.tryParseArguments(
+                new String[]{"-count=-12", "-size", "9223372036854775807", "-ratio", "1.5e3"});
+        assertTrue(result.isValid());
+        assertEquals(-12, result.getValue().getCount());
+        assertEquals(Long.MAX_VALUE, result.getValue().getSize());
+        assertEquals(1500.0, result.getValue().getRatio(), 0.0);
+
+        result = instance.tryParseArguments(
+                new String[]{"-count", "2147483648", "-size", "12x", "-ratio", "0x1p3", "-region", "r"});
+        assertFalse(result.isValid());
+        assertNull(result.getValue());
+        assertEquals(3, result.getErrors().size());
+        assertEquals("Number out of range", result.getErrors().get("count"));
+        assertEquals("Invalid number", result.getErrors().get("size"));
+        assertEquals("Invalid number", result.getErrors().get("ratio"));
+
+        CommandLineParser<TestClass> validated = new CommandLineParser<>(TestClass.class);
+        validated.registerPropertyEditor(Date.class, new FailablePropertyEditor<Date>() {
+
+            @Override
+            public Date getObject(String string) {
+                return new Date(Long.parseLong(string));
+            }
+
+            @Override
+            public boolean tryGetObject(String string, Conversion conversion) {
+                if (!Utils.tryStringToType(Long.TYPE, string, conversion)) {
+                    return false;
+                }
+                return conversion.succeed(new Date((Long) conversion.getValue()));
+            }
+        });
+        ParseResult<TestClass> testResult = validated.tryParseArguments(new String[]{"-date", "never", "-number", "x"});
+        assertEquals(new HashSet<>(Arrays.asList("requiredProperty", "aliased", "number", "date")),
+                testResult.getErrors().keySet());
+        assertEquals("Required option missing", testResult.getErrors().get("aliased"));
+        assertEquals("Invalid value", testResult.getErrors().get("number"));
+        assertEquals("Invalid number", testResult.getErrors().get("date"));
+
+        testResult = validated.tryParseArguments(new String[]{"-date", "1000", "-requiredProperty", "-a", "v"});
+        assertTrue(testResult.isValid());
+        assertEquals(1000L, testResult.getValue().getDate().getTime());
+
+        CommandLineParser<OperandsObject> operands = new CommandLineParser<>(OperandsObject.class);
+        final ParseResult<OperandsObject> operandsResult = operands.tryParseArguments(
+                new String[]{"in.txt", "-level", "2", "--", "-out.txt"});
+        assertTrue(operandsResult.isValid());
+        final Iterator<Path> paths = operandsResult.getValue().getPaths();
+        assertEquals(Paths.get("in.txt"), paths.next());
+        assertEquals(Paths.get("-out.txt"), paths.next());
+        assertFalse(paths.hasNext());
+        assertFalse(operands.tryBind(Collections.singletonMap("level", "2")).getValue().getPaths().hasNext());
+    }
+
+    @Test
+    public void testLazy() {
+        System.out.println("lazy");
+        CommandLineParser<LazyObject> instance = new CommandLineParser<>(LazyObject.class);
+        final int[] conversions = new int[1];
+        instance.registerPropertyEditor(Date.class, new PropertyEditor<Date>() {
+
+            @Override
+            public Date getObject(String string) {
+                conversions[0]++;
+                return new Date(Long.parseLong(string));
+            }
+        });
+        final LazyObject result = instance.parseArguments(new String[]{"-date", "1000", "-count", "5"});
+        assertEquals(0, conversions[0]);
+        assertFalse(result.getDate().isComputed());
+        assertEquals(1000L, result.getDate().get().getTime());
+        assertEquals(1000L, result.getDate().get().getTime());
+        assertEquals(1, conversions[0]);
+        assertEquals(Integer.valueOf(5), result.getCount().get());
+
+        assertArrayEquals(new String[]{"-count=5"}, instance.toArgs(instance.parseArguments(new String[]{"-count", "5"})));
+
+        //Live updates convert lazy options up front, so a bad value leaves the instance unchanged
+        final LiveBinding<LazyObject> binding = instance.parseLive(new String[]{"-count", "5"});
+        final Lazy<Integer> count = binding.getTarget().getCount();
+        try {
+            binding.parseDelta(new String[]{"-count", "x", "-date", "2000"});
+            fail("Expected invalid count");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+        assertSame(count, binding.getTarget().getCount());
+        assertNull(binding.getTarget().getDate());
+    }
+
+    public static class LazyObject {
+
+        private Lazy<Date> date;
+        private Lazy<Integer> count;
+
+        public Lazy<Date> getDate() {
+            return date;
+        }
+
+        @CLIOption(name = "date")
+        public void setDate(Lazy<Date> date) {
+            this.date = date;
+        }
+
+        public Lazy<Integer> getCount() {
+            return count;
+        }
+
+        @CLIOption(name = "count", defaultValue = "1")
+        public void setCount(Lazy<Integer> count) {
+            this.count = count;
+        }
+    }
+
     @Test
     public void testDefault() {
         System.out.println("default");
@@ -153,6 +868,205 @@ public class CommandLineParserTest {
 
     }
 
+    @Test
+    public void testLayeredSources() throws IOException {
+        System.out.println("layeredSources");
+        CommandLineParser<LayeredObject> instance = new CommandLineParser<>(LayeredObject.class);
+        final Map<String, String> environment = new HashMap<>();
+        environment.put("LAYERED_REGION", "env-region");
+        environment.put("LAYERED_VERBOSE", "true");
+        instance.setEnvironment(environment);
+
+        final File file = File.createTempFile("layered", ".properties");
+        file.deleteOnExit();
+        final Properties properties = new Properties();
+        properties.setProperty("region", "file-region");
+        properties.setProperty("n", "file-name");
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, null);
+        }
+        instance.setPropertiesFile(file);
+
+        LayeredObject result = instance.parseArguments(new String[]{});
+        assertEquals("env-region", result.getRegion());
+        assertEquals("file-name", result.getName());
+        assertEquals("default-zone", result.getZone());
+        assertTrue(result.isVerbose());
+
+        result = instance.parseArguments(new String[]{"-region", "cli-region", "-zone", "cli-zone"});
+        assertEquals("cli-region", result.getRegion());
+        assertEquals("cli-zone", result.getZone());
+
+        //A flag disabled in a map isn't enabled by the environment
+        result = instance.bind(Collections.singletonMap("verbose", "false"));
+        assertFalse(result.isVerbose());
+        assertEquals("env-region", result.getRegion());
+        assertTrue(instance.bind(Collections.<String, Object>emptyMap()).isVerbose());
+
+        environment.clear();
+        instance.setEnvironment(environment);
+        result = instance.parseArguments(new String[]{});
+        assertEquals("file-region", result.getRegion());
+        assertFalse(result.isVerbose());
+
+        //A rewrite within the modification time resolution is still picked up
+        final long lastModified = file.lastModified();
+        properties.setProperty("region", "rewritten-region");
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, null);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        result = instance.parseArguments(new String[]{});
+        assertEquals("rewritten-region", result.getRegion());
+    }
+
+    @Test
+    public void testParseDelta() throws IOException {
+        System.out.println("parseDelta");
+        CommandLineParser<LayeredObject> instance = new CommandLineParser<>(LayeredObject.class);
+        instance.setEnvironment(new HashMap<String, String>());
+        LiveBinding<LayeredObject> binding = instance.parseLive(new String[]{"-region", "a", "-zone", "b", "-verbose"});
+        final LayeredObject target = binding.getTarget();
+        assertEquals("a", target.getRegion());
+
+        Set<String> changed = binding.parseDelta(new String[]{"-region", "a", "-zone", "c"});
+        assertEquals(new HashSet<>(Arrays.asList("zone", "verbose")), changed);
+        assertSame(target, binding.getTarget());
+        assertEquals("c", target.getZone());
+        assertFalse(target.isVerbose());
+
+        changed = binding.parseDelta(new String[]{"-region", "a", "-zone", "c"});
+        assertTrue(changed.isEmpty());
+
+        changed = binding.parseDelta(new String[]{"-name", "n1"});
+        assertEquals(new HashSet<>(Arrays.asList("region", "name", "zone")), changed);
+        assertNull(target.getRegion());
+        assertEquals("default-zone", target.getZone());
+
+        final Path file = Files.createTempFile("args", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, Arrays.asList("# comment", "-name", "n2", ""), StandardCharsets.UTF_8);
+        final Set<String> notified = new HashSet<>();
+        try (ArgumentFileWatcher<LayeredObject> watcher = new ArgumentFileWatcher<>(binding, file,
+                new ArgumentFileWatcher.Listener<LayeredObject>() {
+
+            @Override
+            public void optionsChanged(LayeredObject target, Set<String> changedOptions) {
+                notified.addAll(changedOptions);
+            }
+
+            @Override
+            public void reloadFailed(Path file, Exception error) {
+                fail(error.toString());
+            }
+        })) {
+            assertEquals(Collections.singleton("name"), watcher.reload());
+        }
+        assertEquals(Collections.singleton("name"), notified);
+        assertEquals("n2", target.getName());
+    }
+
+    @Test
+    public void testParseDeltaFailure() throws Exception {
+        System.out.println("parseDeltaFailure");
+        CommandLineParser<TableObject> instance = new CommandLineParser<>(TableObject.class);
+        final LiveBinding<TableObject> binding = instance.parseLive(new String[]{"-region", "a"});
+        try {
+            binding.parseDelta(new String[]{"-region", "b", "-count", "x"});
+            fail("Expected invalid count");
+        } catch (IllegalArgumentException ex) {
+            //Expected
+        }
+        assertEquals("a", binding.getTarget().getRegion());
+        assertEquals(7, binding.getTarget().getCount());
+        assertTrue(binding.parseDelta(new String[]{"-region", "a"}).isEmpty());
+
+        //The watcher reports the failure and keeps watching
+        final Path file = Files.createTempFile("args", ".txt");
+        file.toFile().deleteOnExit();
+        final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        final ArgumentFileWatcher<TableObject> watcher = new ArgumentFileWatcher<>(binding, file,
+                new ArgumentFileWatcher.Listener<TableObject>() {
+
+            @Override
+            public void optionsChanged(TableObject target, Set<String> changedOptions) {
+                events.add(changedOptions);
+            }
+
+            @Override
+            public void reloadFailed(Path file, Exception error) {
+                events.add(error);
+            }
+        });
+        final Thread thread = new Thread(watcher);
+        thread.start();
+        try {
+            Files.write(file, Arrays.asList("-count", "x"), StandardCharsets.UTF_8);
+            //Writing can first be seen as an empty file, so wait for the failure
+            Object event;
+            do {
+                event = events.poll(30, TimeUnit.SECONDS);
+            } while (event instanceof Set);
+            assertTrue(event instanceof IllegalArgumentException);
+            Files.write(file, Arrays.asList("-region", "a", "-count", "3"), StandardCharsets.UTF_8);
+            //A write can be seen as more than one modification, so wait for the final content
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (binding.getTarget().getCount() != 3 && System.nanoTime() < deadline) {
+                events.poll(1, TimeUnit.SECONDS);
+            }
+            assertEquals(3, binding.getTarget().getCount());
+            assertEquals("a", binding.getTarget().getRegion());
+        } finally {
+            watcher.close();
+            thread.join(10000);
+        }
+        assertFalse(thread.isAlive());
+    }
+
+    public static class LayeredObject {
+
+        private String region;
+        private String name;
+        private String zone;
+        private boolean verbose;
+
+        public String getRegion() {
+            return region;
+        }
+
+        @CLIOption(name = "region", env = "LAYERED_REGION")
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @CLIOption(name = "name", alias = "n")
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getZone() {
+            return zone;
+        }
+
+        @CLIOption(name = "zone", defaultValue = "default-zone")
+        public void setZone(String zone) {
+            this.zone = zone;
+        }
+
+        public boolean isVerbose() {
+            return verbose;
+        }
+
+        @CLIOption(name = "verbose", flag = true, env = "LAYERED_VERBOSE")
+        public void setVerbose(boolean verbose) {
+            this.verbose = verbose;
+        }
+    }
+
     public static class DefaultObject {
 
         private String defaultedValue;